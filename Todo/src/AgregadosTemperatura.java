@@ -0,0 +1,125 @@
+/**
+ * Canalización de agregados que se alimenta con cada lectura:
+ * cubos de 1 minuto (24 h), 10 minutos (7 días) y 1 hora (30 días) para las
+ * gráficas, percentiles por hora (30 días) y ventanas deslizantes de la última hora y las últimas 24 horas.
+ * Las ventanas trabajan con minutos cerrados y se completan con el minuto
+ * en curso al consultarlas. Las lecturas deben llegar en orden; una lectura
+ * anterior al minuto en curso se cuenta en él.
+ */
+class AgregadosTemperatura {
+    static final long MS_MINUTO = 60_000;
+
+    private final ResolucionTemperatura porMinuto = new ResolucionTemperatura(MS_MINUTO, 1440);
+    private final ResolucionTemperatura porDezMinutos = new ResolucionTemperatura(10 * MS_MINUTO, 1008);
+    private final ResolucionTemperatura porHora = new ResolucionTemperatura(60 * MS_MINUTO, 720);
+    private final PercentisTemperatura percentis = new PercentisTemperatura(60 * MS_MINUTO, 720);
+    private final VentaDeslizante ultimaHora = new VentaDeslizante(60);
+    private final VentaDeslizante ultimoDia = new VentaDeslizante(1440);
+
+    // Minuto en curso, que aún no ha entrado en las ventanas
+    private long minutoActual = -1;
+    private long contaActual;
+    private double sumaActual;
+    private float minimaActual, maximaActual;
+
+    /**
+     * Contabiliza una lectura en todas las resoluciones y ventanas
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     * @param temperatura Temperatura en °C
+     */
+    public void engadir(long instante, float temperatura) {
+        porMinuto.engadir(instante, temperatura);
+        porDezMinutos.engadir(instante, temperatura);
+        porHora.engadir(instante, temperatura);
+        percentis.engadir(instante, temperatura);
+        long minuto = instante / MS_MINUTO;
+        if (minuto > minutoActual) {
+            pecharMinutoActual();
+            minutoActual = minuto;
+            contaActual = 0;
+            sumaActual = 0;
+            minimaActual = Float.POSITIVE_INFINITY;
+            maximaActual = Float.NEGATIVE_INFINITY;
+        }
+        contaActual++;
+        sumaActual += temperatura;
+        minimaActual = Math.min(minimaActual, temperatura);
+        maximaActual = Math.max(maximaActual, temperatura);
+    }
+
+    public VentaDeslizante getUltimaHora() {
+        return ultimaHora;
+    }
+
+    public VentaDeslizante getUltimoDia() {
+        return ultimoDia;
+    }
+
+    /**
+     * Resumen de percentiles de un rango, redondeado a horas completas
+     * @param desde Inicio en milisegundos desde epoch
+     * @param hasta Fin (excluido) en milisegundos desde epoch
+     * @return Resumen con las lecturas de los últimos 30 días que caen en el rango
+     */
+    public ResumoPercentis getPercentis(long desde, long hasta) {
+        return percentis.resumir(desde, hasta);
+    }
+
+    /**
+     * Resolución para gráficas
+     * @param minutos 1, 10 o 60
+     * @return Los cubos de esa resolución
+     */
+    public ResolucionTemperatura getResolucion(int minutos) {
+        switch (minutos) {
+            case 1:
+                return porMinuto;
+            case 10:
+                return porDezMinutos;
+            case 60:
+                return porHora;
+            default:
+                throw new IllegalArgumentException("Resolución non dispoñible: " + minutos + " min");
+        }
+    }
+
+    /**
+     * Lecturas de una ventana en el momento indicado (minutos cerrados más el minuto en curso)
+     * @param venta Ventana a consultar
+     * @param ahora Instante de la consulta en milisegundos desde epoch
+     * @return Número de lecturas
+     */
+    public long getConta(VentaDeslizante venta, long ahora) {
+        venta.caducar(ahora / MS_MINUTO);
+        return venta.getConta() + (enVenta(venta, ahora) ? contaActual : 0);
+    }
+
+    public double getMedia(VentaDeslizante venta, long ahora) {
+        long conta = getConta(venta, ahora);
+        double suma = venta.getSuma() + (enVenta(venta, ahora) ? sumaActual : 0);
+        return conta == 0 ? Double.NaN : suma / conta;
+    }
+
+    public float getMaxima(VentaDeslizante venta, long ahora) {
+        venta.caducar(ahora / MS_MINUTO);
+        return enVenta(venta, ahora) ? Math.max(venta.getMaxima(), maximaActual) : venta.getMaxima();
+    }
+
+    public float getMinima(VentaDeslizante venta, long ahora) {
+        venta.caducar(ahora / MS_MINUTO);
+        return enVenta(venta, ahora) ? Math.min(venta.getMinima(), minimaActual) : venta.getMinima();
+    }
+
+    // El minuto en curso cuenta si cae dentro de la ventana que termina en "ahora"
+    private boolean enVenta(VentaDeslizante venta, long ahora) {
+        long minuto = ahora / MS_MINUTO;
+        return contaActual > 0 && minutoActual <= minuto && minutoActual > minuto - venta.getMinutos();
+    }
+
+    private void pecharMinutoActual() {
+        if (contaActual > 0) {
+            ultimaHora.pecharMinuto(minutoActual, contaActual, sumaActual, minimaActual, maximaActual);
+            ultimoDia.pecharMinuto(minutoActual, contaActual, sumaActual, minimaActual, maximaActual);
+        }
+    }
+}
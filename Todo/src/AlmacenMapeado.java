@@ -0,0 +1,311 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Almacén de vehículos en un fichero proyectado en memoria, para registros
+ * que no caben cómodamente en el heap.
+ *
+ * El fichero es una sucesión de registros fijos de 64 bytes agrupados en
+ * páginas de 4 MB que se proyectan según hacen falta, así que puede superar
+ * los 2 GB de una sola proyección. En el heap solo quedan el índice
+ * matrícula codificada → hueco (dos int por entrada) y la lista de huecos
+ * libres, que se reutilizan al eliminar. Los Vehiculo se crean al devolverlos,
+ * por lo que los cambios hechos sobre un vehículo devuelto no se guardan
+ * hasta volver a llamar a put() con él.
+ *
+ * Registro (64 bytes):
+ * <pre>
+ *   byte  estado (0 libre, 1 ocupado) | byte velocidad | short año | int matrícula codificada
+ *   byte  longitud marca  + 23 bytes UTF-8
+ *   byte  longitud modelo + 31 bytes UTF-8
+ * </pre>
+ * Una longitud 0xFF representa un texto nulo.
+ *
+ * Los cambios se escriben en su hueco, sin diario. Una caída del proceso no
+ * pierde nada, porque las páginas siguen en la caché del sistema; tras una
+ * caída del sistema solo es seguro lo que había antes del último
+ * sincronizar(). Un registro modificado después puede quedar a medias
+ * (campos nuevos mezclados con los antiguos): los registros de 64 bytes no
+ * cruzan ningún sector de 512, y con discos que escriben cada sector
+ * entero queda en la versión vieja o en la nueva, pero eso depende del disco.
+ */
+public class AlmacenMapeado extends AbstractMap<String, Vehiculo> implements Closeable {
+    private static final int TAMANO_REGISTRO = 64;
+    private static final int REGISTROS_POR_PAGINA = 1 << 16;
+    private static final long TAMANO_PAGINA = (long) TAMANO_REGISTRO * REGISTROS_POR_PAGINA;
+
+    // Posición de cada campo dentro del registro
+    private static final int ESTADO = 0;
+    private static final int VELOCIDAD = 1;
+    private static final int ANIO = 2;
+    private static final int MATRICULA = 4;
+    private static final int MARCA = 8;
+    private static final int MODELO = 32;
+    private static final int MAX_MARCA = 23;
+    private static final int MAX_MODELO = 31;
+    private static final int TEXTO_NULO = 0xFF;
+
+    private static final byte LIBRE = 0;
+    private static final byte OCUPADO = 1;
+
+    private final RandomAccessFile fichero;
+    private final FileChannel canal;
+    private final List<MappedByteBuffer> paginas = new ArrayList<>();
+    private final IndiceEnteros indice = new IndiceEnteros();
+    private int[] huecosLibres = new int[16];
+    private int numHuecosLibres;
+    private int siguienteHueco; // Primer hueco que nunca se ha usado
+
+    /**
+     * Abre (o crea) el almacén y reconstruye el índice recorriendo los registros.
+     * @param ruta Fichero del almacén
+     * @throws IOException Si no se puede abrir o proyectar el fichero
+     */
+    public AlmacenMapeado(String ruta) throws IOException {
+        fichero = new RandomAccessFile(ruta, "rw");
+        canal = fichero.getChannel();
+        long numPaginas = (canal.size() + TAMANO_PAGINA - 1) / TAMANO_PAGINA;
+        for (int p = 0; p < numPaginas; p++) {
+            proyectarPagina();
+        }
+        int total = paginas.size() * REGISTROS_POR_PAGINA;
+        for (int hueco = 0; hueco < total; hueco++) {
+            MappedByteBuffer pagina = pagina(hueco);
+            int base = base(hueco);
+            if (pagina.get(base + ESTADO) == OCUPADO) {
+                indice.poner(pagina.getInt(base + MATRICULA), hueco);
+                siguienteHueco = hueco + 1;
+            }
+        }
+        for (int hueco = siguienteHueco - 1; hueco >= 0; hueco--) {
+            if (pagina(hueco).get(base(hueco) + ESTADO) == LIBRE) {
+                liberar(hueco);
+            }
+        }
+    }
+
+    @Override
+    public Vehiculo get(Object matricula) {
+        int codigo = codigoDe(matricula);
+        if (codigo < 0) {
+            return null;
+        }
+        int hueco = indice.obtener(codigo);
+        return hueco < 0 ? null : leer(hueco);
+    }
+
+    @Override
+    public boolean containsKey(Object matricula) {
+        int codigo = codigoDe(matricula);
+        return codigo >= 0 && indice.obtener(codigo) >= 0;
+    }
+
+    /**
+     * Guarda un vehículo en su hueco (o en uno libre si es nuevo).
+     * @param matricula Matrícula del vehículo
+     * @param v Vehículo a guardar
+     * @return Versión anterior del vehículo, o null si no existía
+     */
+    @Override
+    public Vehiculo put(String matricula, Vehiculo v) {
+        if (v == null || !v.getMatricula().equals(matricula)) {
+            throw new IllegalArgumentException("La clave debe ser la matrícula del vehículo");
+        }
+        byte[] marca = textoEnBytes(v.getMarca(), MAX_MARCA, "marca");
+        byte[] modelo = textoEnBytes(v.getModelo(), MAX_MODELO, "modelo");
+        if (v.getAñoFabricacion() < Short.MIN_VALUE || v.getAñoFabricacion() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Año de fabricación fuera de rango: " + v.getAñoFabricacion());
+        }
+        int codigo = Vehiculo.codificarMatricula(matricula);
+        int hueco = indice.obtener(codigo);
+        Vehiculo anterior = hueco < 0 ? null : leer(hueco);
+        if (hueco < 0) {
+            hueco = reservarHueco();
+            indice.poner(codigo, hueco);
+        }
+        MappedByteBuffer pagina = pagina(hueco);
+        int base = base(hueco);
+        pagina.put(base + VELOCIDAD, (byte) v.getVelocidadActual());
+        pagina.putShort(base + ANIO, (short) v.getAñoFabricacion());
+        pagina.putInt(base + MATRICULA, codigo);
+        escribirTexto(pagina, base + MARCA, marca);
+        escribirTexto(pagina, base + MODELO, modelo);
+        // El estado va al final, pero eso no ordena nada en disco (ver la descripción de la clase)
+        pagina.put(base + ESTADO, OCUPADO);
+        return anterior;
+    }
+
+    @Override
+    public Vehiculo remove(Object matricula) {
+        int codigo = codigoDe(matricula);
+        if (codigo < 0) {
+            return null;
+        }
+        int hueco = indice.quitar(codigo);
+        if (hueco < 0) {
+            return null;
+        }
+        Vehiculo anterior = leer(hueco);
+        pagina(hueco).put(base(hueco) + ESTADO, LIBRE);
+        liberar(hueco);
+        return anterior;
+    }
+
+    @Override
+    public int size() {
+        return indice.tamano();
+    }
+
+    @Override
+    public void clear() {
+        for (int hueco = 0; hueco < siguienteHueco; hueco++) {
+            pagina(hueco).put(base(hueco) + ESTADO, LIBRE);
+        }
+        indice.vaciar();
+        numHuecosLibres = 0;
+        siguienteHueco = 0;
+    }
+
+    /**
+     * Recorre los huecos ocupados creando cada Vehiculo al pedirlo.
+     */
+    @Override
+    public Set<Entry<String, Vehiculo>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Vehiculo>> iterator() {
+                return new Iterator<>() {
+                    private int siguiente = avanzar(0);
+
+                    private int avanzar(int desde) {
+                        while (desde < siguienteHueco && pagina(desde).get(base(desde) + ESTADO) != OCUPADO) {
+                            desde++;
+                        }
+                        return desde;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return siguiente < siguienteHueco;
+                    }
+
+                    @Override
+                    public Entry<String, Vehiculo> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Vehiculo v = leer(siguiente);
+                        siguiente = avanzar(siguiente + 1);
+                        return new SimpleImmutableEntry<>(v.getMatricula(), v);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return indice.tamano();
+            }
+        };
+    }
+
+    /**
+     * Fuerza a disco las páginas modificadas.
+     */
+    public void sincronizar() {
+        for (MappedByteBuffer pagina : paginas) {
+            pagina.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sincronizar();
+        canal.close();
+        fichero.close();
+    }
+
+    // Crea el Vehiculo a partir de su registro
+    private Vehiculo leer(int hueco) {
+        MappedByteBuffer pagina = pagina(hueco);
+        int base = base(hueco);
+        try {
+            return new Vehiculo(Vehiculo.decodificarMatricula(pagina.getInt(base + MATRICULA)),
+                    leerTexto(pagina, base + MARCA), leerTexto(pagina, base + MODELO),
+                    pagina.getShort(base + ANIO), pagina.get(base + VELOCIDAD) & 0xFF);
+        } catch (Vehiculo.MatriculaNoValidaException | Vehiculo.VelocidadNoValidaException e) {
+            throw new IllegalStateException("Registro dañado en el hueco " + hueco, e);
+        }
+    }
+
+    // Hueco libre reutilizado o, si no hay, el siguiente sin usar (proyectando otra página si hace falta)
+    private int reservarHueco() {
+        if (numHuecosLibres > 0) {
+            return huecosLibres[--numHuecosLibres];
+        }
+        if (siguienteHueco == paginas.size() * REGISTROS_POR_PAGINA) {
+            try {
+                proyectarPagina();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo ampliar el almacén", e);
+            }
+        }
+        return siguienteHueco++;
+    }
+
+    private void liberar(int hueco) {
+        if (numHuecosLibres == huecosLibres.length) {
+            huecosLibres = Arrays.copyOf(huecosLibres, numHuecosLibres * 2);
+        }
+        huecosLibres[numHuecosLibres++] = hueco;
+    }
+
+    private void proyectarPagina() throws IOException {
+        long inicio = paginas.size() * TAMANO_PAGINA;
+        paginas.add(canal.map(FileChannel.MapMode.READ_WRITE, inicio, TAMANO_PAGINA));
+    }
+
+    private MappedByteBuffer pagina(int hueco) {
+        return paginas.get(hueco / REGISTROS_POR_PAGINA);
+    }
+
+    private static int base(int hueco) {
+        return (hueco % REGISTROS_POR_PAGINA) * TAMANO_REGISTRO;
+    }
+
+    private static int codigoDe(Object matricula) {
+        return matricula instanceof String ? Vehiculo.codificarMatricula((String) matricula) : -1;
+    }
+
+    private static byte[] textoEnBytes(String texto, int maximo, String campo) {
+        if (texto == null) {
+            return null;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maximo) {
+            throw new IllegalArgumentException("La " + campo + " no cabe en el registro (máx. " + maximo + " bytes): " + texto);
+        }
+        return bytes;
+    }
+
+    private static void escribirTexto(MappedByteBuffer pagina, int posicion, byte[] bytes) {
+        if (bytes == null) {
+            pagina.put(posicion, (byte) TEXTO_NULO);
+            return;
+        }
+        pagina.put(posicion, (byte) bytes.length);
+        pagina.put(posicion + 1, bytes);
+    }
+
+    private static String leerTexto(MappedByteBuffer pagina, int posicion) {
+        int longitud = pagina.get(posicion) & 0xFF;
+        if (longitud == TEXTO_NULO) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        pagina.get(posicion + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,458 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Arquivo de lecturas particionado por días: un segmento
+ * rexistros_yyyyMMdd.dat por día, al que solo se añaden bloques.
+ *
+ * Estructura de un segmento (big-endian):
+ * <pre>
+ *   int MAGIA | byte versión
+ *   bloques: int lecturas | int bytes | int CRC32 | long primeiro | long último
+ *            | float mínima | float máxima | datos
+ *   pé:      int lecturas | long primeiro | long último | float mínima | float máxima
+ *            | int CRC32 (de los 28 bytes anteriores) | int MAGIA_PE
+ * </pre>
+ * Los datos de cada bloque van codificados con CodificadorGorilla (versión 2);
+ * los segmentos de la versión 1, con 12 bytes por lectura (long instante +
+ * float temperatura), se siguen leyendo y ampliando en su formato.
+ *
+ * El pé resume el segmento entero y se reescribe detrás de cada bloque
+ * nuevo, así que una consulta por rango descarta un segmento por su nombre
+ * o leyendo solo sus últimos 36 bytes, y dentro de él salta los bloques
+ * fuera del rango por su cabecera. Cada bloque nuevo se escribe encima del
+ * pé anterior, así que un corte a mitad de escritura puede dejar los últimos
+ * bytes del pé viejo detrás de otros nuevos: si falta el pé o no cuadra con
+ * su CRC, se recorren los bloques, se trunca lo incompleto y se reconstruye.
+ * Los pés anteriores, de 32 bytes y sin CRC (magia "PETE"), se reconstruyen
+ * igual la primera vez que se abre el segmento. Los segmentos antiguos (una
+ * List serializada) se convierten la primera vez que se abren.
+ */
+class ArquivoTemperaturas {
+    private static final int MAGIA = 0x54454D50;            // "TEMP"
+    private static final int MAGIA_PE = 0x50455443;         // "PETC"
+    private static final int MAGIA_SERIALIZACION = 0xACED0005;
+    private static final byte VERSION = 2;
+    private static final byte VERSION_SEN_COMPRIMIR = 1;
+    private static final int TAMANO_CABECERA = 5;
+    private static final int TAMANO_CABECERA_BLOQUE = 36;
+    private static final int TAMANO_PE = 36;
+    private static final int BYTES_LECTURA = 12;
+    private static final DateTimeFormatter FORMATO_DIA = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final File directorio;
+    private final ZoneId zona;
+
+    /**
+     * Recibe cada lectura de una consulta, sin crear objetos por lectura
+     */
+    interface ConsumidorLectura {
+        void aceptar(long instante, float temperatura);
+    }
+
+    /**
+     * Resumen de un segmento o de un bloque
+     */
+    static class Resumo {
+        int conta;
+        long primeiro = Long.MAX_VALUE;
+        long ultimo = Long.MIN_VALUE;
+        float minima = Float.POSITIVE_INFINITY;
+        float maxima = Float.NEGATIVE_INFINITY;
+
+        void engadir(long instante, float temperatura) {
+            conta++;
+            primeiro = Math.min(primeiro, instante);
+            ultimo = Math.max(ultimo, instante);
+            minima = Math.min(minima, temperatura);
+            maxima = Math.max(maxima, temperatura);
+        }
+
+        void unir(Resumo outro) {
+            conta += outro.conta;
+            primeiro = Math.min(primeiro, outro.primeiro);
+            ultimo = Math.max(ultimo, outro.ultimo);
+            minima = Math.min(minima, outro.minima);
+            maxima = Math.max(maxima, outro.maxima);
+        }
+
+        boolean solapa(long desde, long hasta) {
+            return conta > 0 && primeiro < hasta && ultimo >= desde;
+        }
+    }
+
+    /**
+     * Constructor del arquivo
+     * @param directorio Directorio de los segmentos
+     * @param zona Zona horaria que decide a qué día pertenece cada lectura
+     */
+    public ArquivoTemperaturas(File directorio, ZoneId zona) {
+        this.directorio = directorio;
+        this.zona = zona;
+    }
+
+    /**
+     * Segmento de un día
+     * @param dia Día del segmento
+     * @return Fichero rexistros_yyyyMMdd.dat
+     */
+    public File segmento(LocalDate dia) {
+        return new File(directorio, "rexistros_" + dia.format(FORMATO_DIA) + ".dat");
+    }
+
+    /**
+     * Añade lecturas al final de los segmentos de sus días, un bloque por día
+     * @param instantes Instantes de las lecturas (en orden)
+     * @param temperaturas Temperaturas de las lecturas
+     * @param n Número de lecturas a guardar
+     * @throws IOException Si falla la escritura
+     */
+    public void engadir(long[] instantes, float[] temperaturas, int n) throws IOException {
+        int inicio = 0;
+        while (inicio < n) {
+            LocalDate dia = dia(instantes[inicio]);
+            long inicioDoDia = inicioDia(dia);
+            long finDia = inicioDia(dia.plusDays(1));
+            int fin = inicio;
+            while (fin < n && instantes[fin] >= inicioDoDia && instantes[fin] < finDia) {
+                fin++;
+            }
+            engadirBloque(segmento(dia), instantes, temperaturas, inicio, fin);
+            inicio = fin;
+        }
+    }
+
+    /**
+     * Lee todas las lecturas de un día
+     * @param dia Día a leer
+     * @param consumidor Destino de las lecturas
+     * @return false si no hay segmento para ese día
+     * @throws IOException Si el segmento no se puede leer
+     */
+    public boolean lerDia(LocalDate dia, ConsumidorLectura consumidor) throws IOException {
+        File arquivo = segmento(dia);
+        if (!arquivo.exists()) {
+            return false;
+        }
+        lerSegmento(arquivo, Long.MIN_VALUE, Long.MAX_VALUE, consumidor);
+        return true;
+    }
+
+    /**
+     * Recorre las lecturas de un rango de tiempo abriendo solo los segmentos
+     * cuyo día y cuyo pé solapan el rango
+     * @param desde Inicio del rango (incluido, milisegundos desde epoch)
+     * @param hasta Fin del rango (excluido)
+     * @param consumidor Destino de las lecturas
+     * @return Número de segmentos cuyos bloques se han leído
+     * @throws IOException Si algún segmento no se puede leer
+     */
+    public int consultar(long desde, long hasta, ConsumidorLectura consumidor) throws IOException {
+        File[] arquivos = directorio.listFiles((d, nome) -> nome.matches("rexistros_\\d{8}\\.dat"));
+        if (arquivos == null || hasta <= desde) {
+            return 0;
+        }
+        Arrays.sort(arquivos);
+        int abertos = 0;
+        for (File arquivo : arquivos) {
+            LocalDate dia;
+            try {
+                dia = LocalDate.parse(arquivo.getName().substring(10, 18), FORMATO_DIA);
+            } catch (DateTimeParseException e) {
+                continue; // Ocho cifras que no son una fecha: no es un segmento
+            }
+            if (inicioDia(dia.plusDays(1)) <= desde || inicioDia(dia) >= hasta) {
+                continue; // Descartado por el nombre, sin abrirlo
+            }
+            if (!resumo(arquivo).solapa(desde, hasta)) {
+                continue; // Descartado por el pé
+            }
+            lerSegmento(arquivo, desde, hasta, consumidor);
+            abertos++;
+        }
+        return abertos;
+    }
+
+    /**
+     * Resumen de un segmento leído de su pé (reparándolo o convirtiéndolo si hace falta)
+     * @param arquivo Segmento
+     * @return Lecturas, primer y último instante, mínima y máxima
+     * @throws IOException Si el segmento no se puede leer
+     */
+    public Resumo resumo(File arquivo) throws IOException {
+        try (RandomAccessFile raf = abrir(arquivo)) {
+            return lerPe(raf);
+        }
+    }
+
+    // Escribe un bloque sobre el pé actual y vuelve a escribir el pé detrás
+    private void engadirBloque(File arquivo, long[] instantes, float[] temperaturas, int desde, int hasta)
+            throws IOException {
+        Resumo bloque = new Resumo();
+        for (int i = desde; i < hasta; i++) {
+            bloque.engadir(instantes[i], temperaturas[i]);
+        }
+
+        try (RandomAccessFile raf = abrir(arquivo)) {
+            byte[] carga = codificar(version(raf), instantes, temperaturas, desde, hasta);
+            CRC32 crc = new CRC32();
+            crc.update(carga);
+            Resumo total = lerPe(raf);
+            total.unir(bloque);
+            long posicion = raf.length() - TAMANO_PE;
+            ByteArrayOutputStream saida = new ByteArrayOutputStream(TAMANO_CABECERA_BLOQUE + carga.length + TAMANO_PE);
+            DataOutputStream out = new DataOutputStream(saida);
+            escribirCabeceraBloque(out, bloque, carga.length, (int) crc.getValue());
+            out.write(carga);
+            escribirPe(out, total);
+            raf.seek(posicion);
+            raf.write(saida.toByteArray());
+            raf.getFD().sync();
+        }
+    }
+
+    // Lee las lecturas de [desde, hasta) saltando los bloques que no solapan
+    private void lerSegmento(File arquivo, long desde, long hasta, ConsumidorLectura consumidor) throws IOException {
+        try (RandomAccessFile raf = abrir(arquivo)) {
+            byte version = version(raf);
+            long fin = raf.length() - TAMANO_PE;
+            long posicion = TAMANO_CABECERA;
+            byte[] carga = new byte[0];
+            CRC32 crc = new CRC32();
+            while (posicion < fin) {
+                raf.seek(posicion);
+                Resumo bloque = new Resumo();
+                int bytes = lerCabeceraBloque(raf, bloque);
+                int crcEsperado = raf.readInt();
+                if (bloque.solapa(desde, hasta)) {
+                    raf.seek(posicion + TAMANO_CABECERA_BLOQUE);
+                    if (carga.length < bytes) {
+                        carga = new byte[bytes];
+                    }
+                    raf.readFully(carga, 0, bytes);
+                    crc.reset();
+                    crc.update(carga, 0, bytes);
+                    if ((int) crc.getValue() != crcEsperado) {
+                        throw new IOException("Bloque danado en " + arquivo.getName());
+                    }
+                    decodificar(version, carga, bytes, bloque.conta, desde, hasta, consumidor);
+                }
+                posicion += TAMANO_CABECERA_BLOQUE + bytes;
+            }
+        }
+    }
+
+    // Abre un segmento para leer y escribir: lo crea, lo convierte o lo repara según haga falta
+    private RandomAccessFile abrir(File arquivo) throws IOException {
+        if (arquivo.exists() && arquivo.length() >= 4) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(arquivo))) {
+                if (in.readInt() == MAGIA_SERIALIZACION) {
+                    convertirAntigo(arquivo);
+                }
+            }
+        }
+        RandomAccessFile raf = new RandomAccessFile(arquivo, "rw");
+        try {
+            if (raf.length() == 0) {
+                raf.writeInt(MAGIA);
+                raf.writeByte(VERSION);
+                escribirPe(raf, new Resumo());
+                return raf;
+            }
+            if (raf.length() < TAMANO_CABECERA || raf.readInt() != MAGIA) {
+                throw new IOException("Formato de segmento descoñecido: " + arquivo.getName());
+            }
+            byte version = raf.readByte();
+            if (version < VERSION_SEN_COMPRIMIR || version > VERSION) {
+                throw new IOException("Versión de segmento non soportada: " + version);
+            }
+            if (raf.length() < TAMANO_CABECERA + TAMANO_PE || lerPe(raf) == null) {
+                reparar(raf);
+            }
+            return raf;
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static byte version(RandomAccessFile raf) throws IOException {
+        raf.seek(4);
+        return raf.readByte();
+    }
+
+    // Datos de un bloque en el formato de la versión del segmento
+    private static byte[] codificar(byte version, long[] instantes, float[] temperaturas, int desde, int hasta)
+            throws IOException {
+        if (version == VERSION) {
+            return CodificadorGorilla.codificar(instantes, temperaturas, desde, hasta);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((hasta - desde) * BYTES_LECTURA);
+        DataOutputStream datos = new DataOutputStream(bytes);
+        for (int i = desde; i < hasta; i++) {
+            datos.writeLong(instantes[i]);
+            datos.writeFloat(temperaturas[i]);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Entrega las lecturas de un bloque que caen en [desde, hasta)
+    private static void decodificar(byte version, byte[] carga, int bytes, int conta, long desde, long hasta,
+                                    ConsumidorLectura consumidor) throws IOException {
+        if (version == VERSION) {
+            try {
+                CodificadorGorilla.decodificar(carga, bytes, conta, desde, hasta, consumidor);
+            } catch (IllegalStateException e) {
+                throw new IOException("Bloque danado: " + e.getMessage());
+            }
+            return;
+        }
+        ByteBuffer lecturas = ByteBuffer.wrap(carga, 0, bytes);
+        for (int i = 0; i < conta; i++) {
+            long instante = lecturas.getLong();
+            float temperatura = lecturas.getFloat();
+            if (instante >= desde && instante < hasta) {
+                consumidor.aceptar(instante, temperatura);
+            }
+        }
+    }
+
+    // Pé del segmento, o null si no está completo, no cuadra con su CRC o es del formato sin CRC
+    private static Resumo lerPe(RandomAccessFile raf) throws IOException {
+        if (raf.length() < TAMANO_CABECERA + TAMANO_PE) {
+            return null;
+        }
+        byte[] bytes = new byte[TAMANO_PE];
+        raf.seek(raf.length() - TAMANO_PE);
+        raf.readFully(bytes);
+        ByteBuffer datos = ByteBuffer.wrap(bytes);
+        if (datos.getInt(TAMANO_PE - 4) != MAGIA_PE) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, TAMANO_PE - 8);
+        if ((int) crc.getValue() != datos.getInt(TAMANO_PE - 8)) {
+            return null;
+        }
+        Resumo pe = new Resumo();
+        pe.conta = datos.getInt();
+        pe.primeiro = datos.getLong();
+        pe.ultimo = datos.getLong();
+        pe.minima = datos.getFloat();
+        pe.maxima = datos.getFloat();
+        return pe;
+    }
+
+    // Recorre los bloques completos y válidos, trunca el resto y reescribe el pé
+    private static void reparar(RandomAccessFile raf) throws IOException {
+        Resumo total = new Resumo();
+        long posicion = TAMANO_CABECERA;
+        long longitud = raf.length();
+        CRC32 crc = new CRC32();
+        while (posicion + TAMANO_CABECERA_BLOQUE <= longitud) {
+            raf.seek(posicion);
+            Resumo bloque = new Resumo();
+            int bytes = lerCabeceraBloque(raf, bloque);
+            int crcEsperado = raf.readInt();
+            if (bytes < 0 || bloque.conta < 0 || posicion + TAMANO_CABECERA_BLOQUE + bytes > longitud) {
+                break;
+            }
+            byte[] carga = new byte[bytes];
+            raf.seek(posicion + TAMANO_CABECERA_BLOQUE);
+            raf.readFully(carga);
+            crc.reset();
+            crc.update(carga);
+            if ((int) crc.getValue() != crcEsperado) {
+                break;
+            }
+            total.unir(bloque);
+            posicion += TAMANO_CABECERA_BLOQUE + bytes;
+        }
+        raf.setLength(posicion);
+        raf.seek(posicion);
+        escribirPe(raf, total);
+        raf.getFD().sync();
+    }
+
+    // Convierte un segmento antiguo (List<RexistroTemperatura> serializada) al formato actual
+    @SuppressWarnings("unchecked")
+    private void convertirAntigo(File arquivo) throws IOException {
+        List<RexistroTemperatura> lista;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(arquivo))) {
+            lista = (List<RexistroTemperatura>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Clase non encontrada ao converter " + arquivo.getName());
+        }
+        long[] instantes = new long[lista.size()];
+        float[] temperaturas = new float[lista.size()];
+        for (int i = 0; i < lista.size(); i++) {
+            instantes[i] = lista.get(i).getDataHora().atZone(zona).toInstant().toEpochMilli();
+            temperaturas[i] = (float) lista.get(i).getTemperatura();
+        }
+        File temporal = new File(arquivo.getPath() + ".tmp");
+        temporal.delete();
+        if (lista.isEmpty()) {
+            abrir(temporal).close();
+        } else {
+            engadirBloque(temporal, instantes, temperaturas, 0, lista.size());
+        }
+        Files.move(temporal.toPath(), arquivo.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Devuelve el nº de bytes de datos; deja la posición antes del CRC
+    private static int lerCabeceraBloque(RandomAccessFile raf, Resumo bloque) throws IOException {
+        bloque.conta = raf.readInt();
+        int bytes = raf.readInt();
+        long posicionCrc = raf.getFilePointer();
+        raf.skipBytes(4);
+        bloque.primeiro = raf.readLong();
+        bloque.ultimo = raf.readLong();
+        bloque.minima = raf.readFloat();
+        bloque.maxima = raf.readFloat();
+        raf.seek(posicionCrc);
+        return bytes;
+    }
+
+    private static void escribirCabeceraBloque(DataOutput out, Resumo bloque, int bytes, int crc) throws IOException {
+        out.writeInt(bloque.conta);
+        out.writeInt(bytes);
+        out.writeInt(crc);
+        out.writeLong(bloque.primeiro);
+        out.writeLong(bloque.ultimo);
+        out.writeFloat(bloque.minima);
+        out.writeFloat(bloque.maxima);
+    }
+
+    private static void escribirPe(DataOutput out, Resumo pe) throws IOException {
+        ByteBuffer datos = ByteBuffer.allocate(TAMANO_PE);
+        datos.putInt(pe.conta);
+        datos.putLong(pe.primeiro);
+        datos.putLong(pe.ultimo);
+        datos.putFloat(pe.minima);
+        datos.putFloat(pe.maxima);
+        CRC32 crc = new CRC32();
+        crc.update(datos.array(), 0, datos.position());
+        datos.putInt((int) crc.getValue());
+        datos.putInt(MAGIA_PE);
+        out.write(datos.array());
+    }
+
+    private LocalDate dia(long instante) {
+        return Instant.ofEpochMilli(instante).atZone(zona).toLocalDate();
+    }
+
+    private long inicioDia(LocalDate dia) {
+        return dia.atStartOfDay(zona).toInstant().toEpochMilli();
+    }
+}
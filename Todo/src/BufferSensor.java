@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer circular de un solo productor y un solo consumidor para las
+ * lecturas de un sensor, sin bloqueos: cada lado solo escribe su propio
+ * contador y lo publica con lazySet (escritura ordenada, sin barrera
+ * completa), y el productor guarda una copia del contador del consumidor
+ * para no leerlo en cada lectura.
+ */
+class BufferSensor {
+    private final long[] instantes;
+    private final float[] temperaturas;
+    private final int mascara;
+    private final AtomicLong escritos = new AtomicLong();  // Solo lo modifica el productor
+    private final AtomicLong lidos = new AtomicLong();     // Solo lo modifica el consumidor
+    private long lidosVistos;                              // Copia del productor de "lidos"
+    private volatile long rexeitadas;                      // Lecturas perdidas por buffer lleno
+
+    /**
+     * Constructor del buffer
+     * @param capacidade Lecturas que caben (se redondea a potencia de 2)
+     */
+    public BufferSensor(int capacidade) {
+        int tamano = Integer.highestOneBit(Math.max(2, capacidade - 1)) << 1;
+        instantes = new long[tamano];
+        temperaturas = new float[tamano];
+        mascara = tamano - 1;
+    }
+
+    /**
+     * Añade una lectura (solo desde el hilo productor de este sensor)
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     * @param temperatura Temperatura en °C
+     * @return false si el buffer está lleno y la lectura se descarta
+     */
+    public boolean ofrecer(long instante, float temperatura) {
+        long e = escritos.get();
+        if (e - lidosVistos > mascara) {
+            lidosVistos = lidos.get();
+            if (e - lidosVistos > mascara) {
+                rexeitadas++;
+                return false;
+            }
+        }
+        int i = (int) (e & mascara);
+        instantes[i] = instante;
+        temperaturas[i] = temperatura;
+        escritos.lazySet(e + 1);
+        return true;
+    }
+
+    /**
+     * Saca lecturas pendientes (solo desde el hilo consumidor)
+     * @param destinoInstantes Array donde copiar los instantes
+     * @param destinoTemperaturas Array donde copiar las temperaturas
+     * @return Número de lecturas copiadas
+     */
+    public int drenar(long[] destinoInstantes, float[] destinoTemperaturas) {
+        long l = lidos.get();
+        int n = (int) Math.min(escritos.get() - l, destinoInstantes.length);
+        for (int k = 0; k < n; k++) {
+            int i = (int) ((l + k) & mascara);
+            destinoInstantes[k] = instantes[i];
+            destinoTemperaturas[k] = temperaturas[i];
+        }
+        lidos.lazySet(l + n);
+        return n;
+    }
+
+    public long getRexeitadas() {
+        return rexeitadas;
+    }
+}
@@ -10,10 +10,14 @@
  */
 
 import java.io.*;
+        import java.nio.charset.StandardCharsets;
+        import java.nio.file.*;
         import java.time.*;
         import java.time.format.*;
         import java.util.*;
+        import java.util.function.IntFunction;
         import java.util.stream.*;
+        import java.util.zip.CRC32;
 
 /**
  * Clase que representa un mensaje en el chat
@@ -40,6 +44,17 @@ class Mensaje implements Serializable {
      * @param texto Contenido del mensaje (no puede ser nulo)
      */
     public Mensaje(String emisor, String receptor, String texto) {
+        this(emisor, receptor, texto, LocalDateTime.now()); // Fecha actual al crear el mensaje
+    }
+
+    /**
+     * Constructor con la fecha ya conocida (p. ej. al leer el registro de mensajes)
+     * @param emisor Nombre del emisor (no puede ser nulo o vacío)
+     * @param receptor Nombre del receptor (no puede ser nulo o vacío)
+     * @param texto Contenido del mensaje (no puede ser nulo)
+     * @param fecha Fecha y hora del mensaje (no puede ser nula)
+     */
+    public Mensaje(String emisor, String receptor, String texto, LocalDateTime fecha) {
         // Validación de parámetros
         if (emisor == null || emisor.trim().isEmpty()) {
             throw new IllegalArgumentException("El emisor no puede estar vacío");
@@ -50,12 +65,15 @@ class Mensaje implements Serializable {
         if (texto == null) {
             throw new IllegalArgumentException("El texto no puede ser nulo");
         }
+        if (fecha == null) {
+            throw new IllegalArgumentException("La fecha no puede ser nula");
+        }
 
         // Asignación de valores
         this.emisor = emisor.trim();
         this.receptor = receptor.trim();
         this.texto = texto;
-        this.fecha = LocalDateTime.now(); // Fecha actual al crear el mensaje
+        this.fecha = fecha;
     }
 
     // Métodos getters para acceder a los campos privados
@@ -136,6 +154,829 @@ class UsuarioNoEncontradoException extends Exception {
     }
 }
 
+/**
+ * Índice invertido de los mensajes para la búsqueda por palabras clave:
+ * para cada palabra (en minúsculas) guarda la lista de posiciones en
+ * "mensajes" de los mensajes que la contienen. Se actualiza al enviar
+ * cada mensaje, así que buscar no recorre el historial.
+ *
+ * Cada lista está comprimida: las posiciones van en orden creciente y se
+ * guarda la diferencia con la anterior en bytes de longitud variable
+ * (7 bits por byte), en bloques de 128 posiciones. Como los mensajes nuevos
+ * tienen las posiciones más altas, las listas se recorren de la última a la
+ * primera y se salta de bloque en bloque al cruzarlas; así se obtienen los
+ * N resultados más recientes sin descomprimir listas enteras.
+ *
+ * Consultas: palabras separadas por espacios = todas (AND), OR entre grupos
+ * = cualquiera de ellos, y "texto entre comillas" = frase exacta, que se
+ * comprueba sobre el texto de los mensajes candidatos.
+ */
+class IndiceMensajes {
+    private final Map<String, ListaPosiciones> listas = new HashMap<>();
+
+    /**
+     * Añade un mensaje al índice. Las posiciones deben llegar en orden creciente.
+     * @param posicion Posición del mensaje en la lista de mensajes
+     * @param texto Texto del mensaje
+     */
+    public void indexar(int posicion, String texto) {
+        for (String palabra : tokenizar(texto)) {
+            listas.computeIfAbsent(palabra, p -> new ListaPosiciones()).engadir(posicion);
+        }
+    }
+
+    public void vaciar() {
+        listas.clear();
+    }
+
+    /**
+     * Busca los mensajes más recientes que cumplen la consulta
+     * @param consulta Palabras, OR y "frases"
+     * @param maximo Número máximo de resultados
+     * @param textos Texto de cada mensaje por su posición (para comprobar frases)
+     * @return Posiciones de los mensajes encontrados, de la más reciente a la más antigua
+     */
+    public int[] buscar(String consulta, int maximo, IntFunction<String> textos) {
+        List<Grupo> grupos = new ArrayList<>();
+        for (List<List<String>> terminos : analizar(consulta)) {
+            Grupo grupo = crearGrupo(terminos, textos);
+            if (grupo != null) {
+                grupos.add(grupo);
+            }
+        }
+        // Unión de los grupos: se toma siempre la posición más alta pendiente
+        int[] actuales = new int[grupos.size()];
+        for (int g = 0; g < grupos.size(); g++) {
+            actuales[g] = grupos.get(g).siguiente(Integer.MAX_VALUE);
+        }
+        int[] resultado = new int[maximo];
+        int n = 0;
+        while (n < maximo) {
+            int mayor = -1;
+            for (int actual : actuales) {
+                mayor = Math.max(mayor, actual);
+            }
+            if (mayor < 0) {
+                break;
+            }
+            resultado[n++] = mayor;
+            for (int g = 0; g < actuales.length; g++) {
+                if (actuales[g] == mayor) {
+                    actuales[g] = grupos.get(g).siguiente(mayor - 1);
+                }
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /**
+     * Divide un texto en palabras: secuencias de letras o dígitos, en minúsculas
+     * @param texto Texto a dividir
+     * @return Palabras en orden de aparición
+     */
+    static List<String> tokenizar(String texto) {
+        List<String> palabras = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= texto.length(); i++) {
+            boolean letra = i < texto.length() && Character.isLetterOrDigit(texto.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                palabras.add(texto.substring(inicio, i).toLowerCase(Locale.ROOT));
+                inicio = -1;
+            }
+        }
+        return palabras;
+    }
+
+    // Grupos separados por OR; cada grupo es una lista de términos (una palabra o una frase)
+    private static List<List<List<String>>> analizar(String consulta) {
+        List<List<List<String>>> grupos = new ArrayList<>();
+        List<List<String>> grupo = new ArrayList<>();
+        String[] trozos = consulta.split("\"", -1);
+        for (int t = 0; t < trozos.length; t++) {
+            if (t % 2 == 1) {
+                // Entre comillas (una comilla sin cerrar abarca hasta el final)
+                List<String> frase = tokenizar(trozos[t]);
+                if (!frase.isEmpty()) {
+                    grupo.add(frase);
+                }
+                continue;
+            }
+            for (String palabra : trozos[t].trim().split("\\s+")) {
+                if (palabra.equals("OR")) {
+                    if (!grupo.isEmpty()) {
+                        grupos.add(grupo);
+                    }
+                    grupo = new ArrayList<>();
+                } else {
+                    for (String token : tokenizar(palabra)) {
+                        grupo.add(List.of(token));
+                    }
+                }
+            }
+        }
+        if (!grupo.isEmpty()) {
+            grupos.add(grupo);
+        }
+        return grupos;
+    }
+
+    // null si alguna palabra no aparece en ningún mensaje (el grupo no puede cumplirse)
+    private Grupo crearGrupo(List<List<String>> terminos, IntFunction<String> textos) {
+        Set<String> palabras = new LinkedHashSet<>();
+        List<List<String>> frases = new ArrayList<>();
+        for (List<String> termino : terminos) {
+            palabras.addAll(termino);
+            if (termino.size() > 1) {
+                frases.add(termino);
+            }
+        }
+        List<Cursor> cursores = new ArrayList<>();
+        for (String palabra : palabras) {
+            ListaPosiciones lista = listas.get(palabra);
+            if (lista == null) {
+                return null;
+            }
+            cursores.add(new Cursor(lista));
+        }
+        // Las listas más cortas primero: marcan el ritmo y descartan antes
+        cursores.sort(Comparator.comparingInt(c -> c.lista.conta));
+        return new Grupo(cursores, frases, textos);
+    }
+
+    /**
+     * Intersección de las listas de un grupo, con las frases comprobadas
+     */
+    private static class Grupo {
+        private final List<Cursor> cursores;
+        private final List<List<String>> frases;
+        private final IntFunction<String> textos;
+
+        Grupo(List<Cursor> cursores, List<List<String>> frases, IntFunction<String> textos) {
+            this.cursores = cursores;
+            this.frases = frases;
+            this.textos = textos;
+        }
+
+        // Mayor posición <= limite que está en todas las listas y contiene las frases, o -1
+        int siguiente(int limite) {
+            while (limite >= 0) {
+                int candidata = cursores.get(0).bajarHasta(limite);
+                boolean enTodas = true;
+                for (int c = 1; c < cursores.size() && candidata >= 0; c++) {
+                    int otra = cursores.get(c).bajarHasta(candidata);
+                    if (otra != candidata) {
+                        candidata = otra;
+                        enTodas = false;
+                        break;
+                    }
+                }
+                if (candidata < 0) {
+                    return -1;
+                }
+                if (enTodas && contieneFrases(textos.apply(candidata))) {
+                    return candidata;
+                }
+                limite = enTodas ? candidata - 1 : candidata;
+            }
+            return -1;
+        }
+
+        private boolean contieneFrases(String texto) {
+            if (frases.isEmpty()) {
+                return true;
+            }
+            List<String> palabras = tokenizar(texto);
+            for (List<String> frase : frases) {
+                if (Collections.indexOfSubList(palabras, frase) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Posiciones comprimidas de una palabra, en bloques de POR_BLOQUE.
+     * La primera posición de cada bloque se guarda aparte (sin comprimir)
+     * para poder empezar a leer por cualquier bloque.
+     */
+    private static class ListaPosiciones {
+        static final int POR_BLOQUE = 128;
+
+        byte[] datos = new byte[8];
+        int bytes;
+        int[] primera = new int[1];     // Primera posición de cada bloque
+        int[] inicio = new int[1];      // Byte donde empiezan las diferencias del bloque
+        int numBloques;
+        int conta;
+        int ultima = -1;
+
+        void engadir(int posicion) {
+            if (posicion == ultima) {
+                return; // Palabra repetida en el mismo mensaje
+            }
+            if (conta % POR_BLOQUE == 0) {
+                if (numBloques == primera.length) {
+                    primera = Arrays.copyOf(primera, numBloques * 2);
+                    inicio = Arrays.copyOf(inicio, numBloques * 2);
+                }
+                primera[numBloques] = posicion;
+                inicio[numBloques++] = bytes;
+            } else {
+                escribirVariable(posicion - ultima);
+            }
+            ultima = posicion;
+            conta++;
+        }
+
+        // Descomprime un bloque en "destino" y devuelve cuántas posiciones tiene
+        int leerBloque(int bloque, int[] destino) {
+            int n = bloque == numBloques - 1 ? conta - bloque * POR_BLOQUE : POR_BLOQUE;
+            int p = inicio[bloque];
+            int posicion = primera[bloque];
+            destino[0] = posicion;
+            for (int i = 1; i < n; i++) {
+                int diferencia = 0;
+                int desplazamiento = 0;
+                byte b;
+                do {
+                    b = datos[p++];
+                    diferencia |= (b & 0x7F) << desplazamiento;
+                    desplazamiento += 7;
+                } while (b < 0);
+                posicion += diferencia;
+                destino[i] = posicion;
+            }
+            return n;
+        }
+
+        private void escribirVariable(int valor) {
+            if (bytes + 5 > datos.length) {
+                datos = Arrays.copyOf(datos, datos.length * 2);
+            }
+            while (valor >= 0x80) {
+                datos[bytes++] = (byte) (valor | 0x80);
+                valor >>>= 7;
+            }
+            datos[bytes++] = (byte) valor;
+        }
+    }
+
+    /**
+     * Recorre una lista de la posición más alta a la más baja
+     */
+    private static class Cursor {
+        final ListaPosiciones lista;
+        private final int[] bloque = new int[ListaPosiciones.POR_BLOQUE];
+        private int bloqueActual = -1;  // Bloque descomprimido en "bloque"
+        private int enBloque;           // Posiciones del bloque descomprimido
+        private int indice;             // Índice de la última posición devuelta
+
+        Cursor(ListaPosiciones lista) {
+            this.lista = lista;
+        }
+
+        // Mayor posición de la lista que es <= limite, o -1 si no hay
+        int bajarHasta(int limite) {
+            boolean enOtroBloque = bloqueActual < 0 || lista.primera[bloqueActual] > limite
+                    || (bloqueActual + 1 < lista.numBloques && lista.primera[bloqueActual + 1] <= limite);
+            if (enOtroBloque) {
+                // Búsqueda binaria del último bloque que empieza en o antes del límite
+                int b = buscarBloque(limite);
+                if (b < 0) {
+                    return -1;
+                }
+                enBloque = lista.leerBloque(b, bloque);
+                bloqueActual = b;
+                indice = enBloque - 1;
+            } else if (bloque[indice] < limite) {
+                indice = enBloque - 1;
+            }
+            while (bloque[indice] > limite) {
+                indice--;
+            }
+            return bloque[indice];
+        }
+
+        private int buscarBloque(int limite) {
+            int bajo = 0;
+            int alto = lista.numBloques - 1;
+            int encontrado = -1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (lista.primera[medio] <= limite) {
+                    encontrado = medio;
+                    bajo = medio + 1;
+                } else {
+                    alto = medio - 1;
+                }
+            }
+            return encontrado;
+        }
+    }
+}
+
+/**
+ * Buzones por usuario: para cada nombre normalizado (sin espacios a los
+ * lados y en minúsculas) guarda las posiciones en "mensajes" de los
+ * mensajes recibidos y enviados, en arrays de int que solo crecen.
+ * Ver el buzón de un usuario cuesta lo que ocupan sus mensajes, no el
+ * historial entero.
+ *
+ * Las páginas se piden con un cursor que es el índice dentro del buzón:
+ * como los buzones solo crecen por el final, un cursor sigue siendo
+ * válido aunque lleguen mensajes nuevos entre página y página.
+ */
+class BuzonesUsuarios {
+    private final Map<String, Buzon> buzones = new HashMap<>();
+
+    /**
+     * Anota un mensaje en el buzón de su emisor y en el de su receptor
+     * @param posicion Posición del mensaje en la lista de mensajes
+     * @param mensaje Mensaje enviado
+     */
+    public void registrar(int posicion, Mensaje mensaje) {
+        buzon(mensaje.getEmisor()).enviados.engadir(posicion);
+        buzon(mensaje.getReceptor()).recibidos.engadir(posicion);
+    }
+
+    public void vaciar() {
+        buzones.clear();
+    }
+
+    /**
+     * Número de mensajes de un buzón
+     * @param usuario Nombre del usuario
+     * @param recibidos true para los recibidos, false para los enviados
+     * @return Mensajes en el buzón (0 si el usuario no tiene ninguno)
+     */
+    public int conta(String usuario, boolean recibidos) {
+        Buzon buzon = buzones.get(normalizar(usuario));
+        return buzon == null ? 0 : (recibidos ? buzon.recibidos : buzon.enviados).conta;
+    }
+
+    /**
+     * Página de un buzón, en orden de envío
+     * @param usuario Nombre del usuario
+     * @param recibidos true para los recibidos, false para los enviados
+     * @param cursor Índice dentro del buzón desde el que empieza la página (0 = el más antiguo)
+     * @param maximo Tamaño de página
+     * @return Posiciones en la lista de mensajes; el siguiente cursor es cursor + longitud
+     */
+    public int[] pagina(String usuario, boolean recibidos, int cursor, int maximo) {
+        Buzon buzon = buzones.get(normalizar(usuario));
+        if (buzon == null) {
+            return new int[0];
+        }
+        Posiciones lista = recibidos ? buzon.recibidos : buzon.enviados;
+        int desde = Math.min(Math.max(cursor, 0), lista.conta);
+        return Arrays.copyOfRange(lista.posiciones, desde, Math.min(lista.conta, desde + maximo));
+    }
+
+    static String normalizar(String nombre) {
+        return nombre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Buzon buzon(String nombre) {
+        return buzones.computeIfAbsent(normalizar(nombre), n -> new Buzon());
+    }
+
+    private static class Buzon {
+        final Posiciones recibidos = new Posiciones();
+        final Posiciones enviados = new Posiciones();
+    }
+
+    private static class Posiciones {
+        int[] posiciones = new int[4];
+        int conta;
+
+        void engadir(int posicion) {
+            if (conta == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, conta * 2);
+            }
+            posiciones[conta++] = posicion;
+        }
+    }
+}
+
+/**
+ * Registro de mensajes en disco: un log de solo añadir en el que cada alta
+ * de usuario y cada mensaje se escribe al momento, en vez de guardar todo
+ * el chat al salir. Guardar cuesta lo mismo con diez mensajes que con un
+ * millón y una caída solo pierde, como mucho, el último grupo sin fsync.
+ *
+ * El log se divide en segmentos de hasta 8 MB ("<nº primer registro>.log")
+ * y cada registro es:
+ * <pre>
+ *   int longitud | int CRC32 del cuerpo | cuerpo (byte tipo + datos)
+ * </pre>
+ * Junto a cada segmento hay un índice disperso (".idx") con el nº de
+ * registro y la posición de uno de cada 64, para empezar a leer desde un
+ * registro sin recorrer el segmento desde el principio.
+ *
+ * Los registros pasan al sistema operativo al escribirse y el fsync se
+ * agrupa con ConfirmacionAgrupada, como en DiarioParking (cada 32 registros
+ * o, como mucho, 200 ms después de escribir uno). Al abrir se
+ * comprueba el último segmento: una cola rota o con CRC incorrecto (caída
+ * a mitad de escritura) se recorta y su índice se reconstruye.
+ */
+class RegistroMensajes implements Closeable {
+    /**
+     * Recibe los registros al recorrer el log
+     */
+    interface Lector {
+        void usuario(String nombre);
+
+        void mensaje(Mensaje mensaje);
+    }
+
+    // Tipos de registro
+    private static final byte USUARIO = 1;
+    private static final byte MENSAJE = 2;
+
+    private static final long TAMANO_SEGMENTO = 8L << 20;
+    private static final int REGISTROS_POR_INDICE = 64;
+    private static final int MAX_CUERPO = 16 << 20;      // Una longitud mayor es basura
+    private static final int CABECERA = 8;               // longitud + CRC
+
+    // Registros que se agrupan antes de forzar el volcado a disco (group commit)
+    private static final int REGISTROS_POR_FSYNC = 32;
+    // Tiempo máximo que un registro ya escrito espera su fsync si no llegan más
+    private static final long MAX_ESPERA_FSYNC_MS = 200;
+
+    private final File directorio;
+    private long numeroSiguiente;       // Nº del próximo registro
+    private long inicioSegmento;        // Nº del primer registro del segmento actual
+    private long posicion;              // Bytes escritos en el segmento actual
+    private long bytesDescartados;      // Cola rota recortada al abrir
+    private FileOutputStream fosLog;
+    private DataOutputStream salidaLog;
+    private FileOutputStream fosIndice;
+    private DataOutputStream salidaIndice;
+    private final ConfirmacionAgrupada confirmacion =
+            new ConfirmacionAgrupada(this, this::sincronizar, REGISTROS_POR_FSYNC, MAX_ESPERA_FSYNC_MS);
+    private boolean colaDudosa;         // Falló una escritura: puede haber un registro a medias
+
+    /**
+     * Constructor del registro
+     * @param directorio Directorio de los segmentos (se crea al escribir)
+     */
+    public RegistroMensajes(File directorio) {
+        this.directorio = directorio;
+    }
+
+    /**
+     * Indica si ya hay algún segmento en disco
+     * @return true si el directorio contiene segmentos
+     */
+    public boolean existe() {
+        return segmentos().length > 0;
+    }
+
+    /**
+     * Prepara el log para escribir: comprueba el último segmento, recorta la
+     * cola rota si la hay y reconstruye su índice.
+     * @return Número de registros del log
+     * @throws IOException Si no se puede leer o recortar el segmento
+     */
+    public synchronized long abrir() throws IOException {
+        close();
+        bytesDescartados = 0;
+        File[] segmentos = segmentos();
+        if (segmentos.length == 0) {
+            numeroSiguiente = 0;
+            inicioSegmento = 0;
+            posicion = 0;
+            return 0;
+        }
+        File ultimo = segmentos[segmentos.length - 1];
+        inicioSegmento = inicioDe(ultimo);
+        ByteArrayOutputStream indice = new ByteArrayOutputStream();
+        DataOutputStream entradas = new DataOutputStream(indice);
+        long numero = inicioSegmento;
+        long valido = 0;
+        long longitud = ultimo.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(ultimo), 1 << 16))) {
+            while (true) {
+                byte[] cuerpo = leerRegistro(in, longitud - valido);
+                if (cuerpo == null) {
+                    break;
+                }
+                if ((numero - inicioSegmento) % REGISTROS_POR_INDICE == 0) {
+                    entradas.writeLong(numero);
+                    entradas.writeLong(valido);
+                }
+                valido += CABECERA + cuerpo.length;
+                numero++;
+            }
+        }
+        if (valido < longitud) {
+            try (RandomAccessFile raf = new RandomAccessFile(ultimo, "rw")) {
+                raf.setLength(valido);
+                raf.getFD().sync();
+            }
+            bytesDescartados = longitud - valido;
+        }
+        // El índice se reescribe entero: puede tener entradas de la cola recortada o faltarle alguna
+        File temporal = new File(directorio, ultimo.getName().replace(".log", ".idx.tmp"));
+        try (FileOutputStream fos = new FileOutputStream(temporal)) {
+            indice.writeTo(fos);
+            fos.getFD().sync();
+        }
+        Files.move(temporal.toPath(), ficheroIndice(inicioSegmento).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        numeroSiguiente = numero;
+        posicion = valido;
+        return numeroSiguiente;
+    }
+
+    /**
+     * Bytes de cola rota que se recortaron en el último abrir()
+     * @return 0 si el log estaba completo
+     */
+    public synchronized long getBytesDescartados() {
+        return bytesDescartados;
+    }
+
+    /**
+     * Lee en orden los registros desde el número indicado, saltando con el
+     * índice disperso hasta el más cercano
+     * @param desde Nº del primer registro que interesa (0 = todos)
+     * @param lector Destino de los registros
+     * @throws IOException Si falta algún registro o alguno está dañado
+     */
+    public synchronized void recorrer(long desde, Lector lector) throws IOException {
+        if (salidaLog != null) {
+            salidaLog.flush();
+        }
+        File[] segmentos = segmentos();
+        int s = 0;
+        while (s + 1 < segmentos.length && inicioDe(segmentos[s + 1]) <= desde) {
+            s++;
+        }
+        for (; s < segmentos.length; s++) {
+            File segmento = segmentos[s];
+            long numero = inicioDe(segmento);
+            long inicio = 0;
+            long[] entrada = buscarEnIndice(ficheroIndice(numero), desde);
+            if (entrada != null) {
+                numero = entrada[0];
+                inicio = entrada[1];
+            }
+            long longitud = segmento.length();
+            try (FileInputStream fis = new FileInputStream(segmento)) {
+                fis.getChannel().position(inicio);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 1 << 16));
+                long leido = inicio;
+                while (leido < longitud) {
+                    byte[] cuerpo = leerRegistro(in, longitud - leido);
+                    if (cuerpo == null) {
+                        throw new IOException("Registro dañado en " + segmento.getName() + ", posición " + leido);
+                    }
+                    if (numero >= desde) {
+                        aplicar(cuerpo, lector);
+                    }
+                    leido += CABECERA + cuerpo.length;
+                    numero++;
+                }
+            }
+            if (s + 1 < segmentos.length && inicioDe(segmentos[s + 1]) != numero) {
+                throw new IOException("Faltan registros entre " + segmento.getName() + " y " + segmentos[s + 1].getName());
+            }
+        }
+    }
+
+    /**
+     * Añade el alta de un usuario
+     * @param nombre Nombre del usuario
+     * @throws IOException Si falla la escritura
+     */
+    public synchronized void registrarUsuario(String nombre) throws IOException {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(cuerpo);
+        out.writeByte(USUARIO);
+        escribirTexto(out, nombre);
+        escribir(cuerpo.toByteArray());
+    }
+
+    /**
+     * Añade un mensaje
+     * @param mensaje Mensaje enviado
+     * @throws IOException Si falla la escritura
+     */
+    public synchronized void registrarMensaje(Mensaje mensaje) throws IOException {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(cuerpo);
+        out.writeByte(MENSAJE);
+        escribirTexto(out, mensaje.getEmisor());
+        escribirTexto(out, mensaje.getReceptor());
+        escribirTexto(out, mensaje.getTexto());
+        // La fecha local se guarda tal cual, sin zona horaria
+        out.writeLong(mensaje.getFecha().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(mensaje.getFecha().getNano());
+        escribir(cuerpo.toByteArray());
+    }
+
+    /**
+     * Fuerza a disco todos los registros pendientes.
+     * @throws IOException Si falla el volcado
+     */
+    public synchronized void sincronizar() throws IOException {
+        if (salidaLog == null) {
+            return;
+        }
+        salidaLog.flush();
+        fosLog.getFD().sync();
+        salidaIndice.flush();
+        fosIndice.getFD().sync();
+        confirmacion.sincronizado();
+    }
+
+    /**
+     * Vuelca lo pendiente y cierra el segmento actual.
+     * @throws IOException Si falla el volcado
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (salidaLog == null) {
+            return;
+        }
+        try {
+            sincronizar();
+        } finally {
+            salidaLog.close();
+            salidaIndice.close();
+            salidaLog = null;
+            salidaIndice = null;
+            fosLog = null;
+            fosIndice = null;
+        }
+    }
+
+    // Escribe un registro en el segmento actual y pasa al siguiente si se ha llenado.
+    // Si la escritura falla, el registro no cuenta y la cola se revisa antes del siguiente
+    private void escribir(byte[] cuerpo) throws IOException {
+        if (colaDudosa) {
+            // abrir() recorta lo que dejara a medias la escritura fallida
+            abrir();
+            colaDudosa = false;
+        }
+        confirmacion.comprobar();
+        try {
+            escribirRegistro(cuerpo);
+        } catch (IOException e) {
+            descartarSalida();
+            colaDudosa = true;
+            throw e;
+        }
+        posicion += CABECERA + cuerpo.length;
+        numeroSiguiente++;
+        confirmacion.registrado();
+        if (posicion >= TAMANO_SEGMENTO) {
+            close();
+            inicioSegmento = numeroSiguiente;
+            posicion = 0;
+        }
+    }
+
+    private void escribirRegistro(byte[] cuerpo) throws IOException {
+        if (salidaLog == null) {
+            if (!directorio.isDirectory() && !directorio.mkdirs()) {
+                throw new IOException("No se pudo crear el directorio " + directorio);
+            }
+            fosLog = new FileOutputStream(ficheroSegmento(inicioSegmento), true);
+            salidaLog = new DataOutputStream(new BufferedOutputStream(fosLog));
+            fosIndice = new FileOutputStream(ficheroIndice(inicioSegmento), true);
+            salidaIndice = new DataOutputStream(new BufferedOutputStream(fosIndice));
+        }
+        if ((numeroSiguiente - inicioSegmento) % REGISTROS_POR_INDICE == 0) {
+            salidaIndice.writeLong(numeroSiguiente);
+            salidaIndice.writeLong(posicion);
+            salidaIndice.flush();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(cuerpo);
+        salidaLog.writeInt(cuerpo.length);
+        salidaLog.writeInt((int) crc.getValue());
+        salidaLog.write(cuerpo);
+        // Al sistema operativo en cada registro; a disco, por grupos
+        salidaLog.flush();
+    }
+
+    // Cierra los flujos sin volcar lo que tengan en el buffer
+    private void descartarSalida() {
+        for (Closeable flujo : new Closeable[]{fosLog, fosIndice}) {
+            try {
+                if (flujo != null) {
+                    flujo.close();
+                }
+            } catch (IOException e) {
+                // El flujo ya había fallado
+            }
+        }
+        salidaLog = null;
+        salidaIndice = null;
+        fosLog = null;
+        fosIndice = null;
+    }
+
+    // Cuerpo de un registro completo y con CRC correcto, o null si lo que queda no lo es
+    private static byte[] leerRegistro(DataInputStream in, long restantes) throws IOException {
+        if (restantes < CABECERA) {
+            return null;
+        }
+        int longitud = in.readInt();
+        int crcEsperado = in.readInt();
+        if (longitud < 1 || longitud > MAX_CUERPO || longitud > restantes - CABECERA) {
+            return null;
+        }
+        byte[] cuerpo = new byte[longitud];
+        in.readFully(cuerpo);
+        CRC32 crc = new CRC32();
+        crc.update(cuerpo);
+        return (int) crc.getValue() == crcEsperado ? cuerpo : null;
+    }
+
+    private static void aplicar(byte[] cuerpo, Lector lector) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(cuerpo));
+        try {
+            byte tipo = in.readByte();
+            if (tipo == USUARIO) {
+                lector.usuario(leerTexto(in));
+            } else if (tipo == MENSAJE) {
+                String emisor = leerTexto(in);
+                String receptor = leerTexto(in);
+                String texto = leerTexto(in);
+                LocalDateTime fecha = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                lector.mensaje(new Mensaje(emisor, receptor, texto, fecha));
+            } else {
+                throw new IOException("Tipo de registro desconocido: " + tipo);
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IOException("Registro no válido: " + e.getMessage());
+        }
+    }
+
+    // Textos como longitud + UTF-8 (writeUTF no admite más de 64 KB)
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        int longitud = in.readInt();
+        if (longitud < 0 || longitud > in.available()) {
+            throw new IOException("Texto no válido en el registro");
+        }
+        byte[] bytes = new byte[longitud];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Última entrada del índice con nº <= desde: {nº, posición}, o null si no hay
+    private static long[] buscarEnIndice(File indice, long desde) throws IOException {
+        if (!indice.exists()) {
+            return null;
+        }
+        long[] encontrada = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indice)))) {
+            for (long n = indice.length() / 16; n > 0; n--) {
+                long numero = in.readLong();
+                long posicionRegistro = in.readLong();
+                if (numero > desde) {
+                    break;
+                }
+                encontrada = new long[] {numero, posicionRegistro};
+            }
+        }
+        return encontrada;
+    }
+
+    private File[] segmentos() {
+        File[] segmentos = directorio.listFiles((d, nombre) -> nombre.matches("\\d{20}\\.log"));
+        if (segmentos == null) {
+            return new File[0];
+        }
+        Arrays.sort(segmentos);
+        return segmentos;
+    }
+
+    private File ficheroSegmento(long inicio) {
+        return new File(directorio, String.format("%020d.log", inicio));
+    }
+
+    private File ficheroIndice(long inicio) {
+        return new File(directorio, String.format("%020d.idx", inicio));
+    }
+
+    private static long inicioDe(File segmento) {
+        return Long.parseLong(segmento.getName().substring(0, 20));
+    }
+}
+
 /**
  * Clase principal que gestiona el sistema de chat
  */
@@ -144,16 +985,31 @@ public class ChatUsuarios {
     private static Set<Usuario> usuarios = new HashSet<>();
     // Lista de todos los mensajes
     private static List<Mensaje> mensajes = new ArrayList<>();
+    // Índice palabra → posiciones en "mensajes", para buscar sin recorrerlos
+    private static final IndiceMensajes indice = new IndiceMensajes();
+    // Resultados que se muestran en una búsqueda
+    private static final int MAX_RESULTADOS = 20;
+    // Mensajes recibidos y enviados de cada usuario
+    private static final BuzonesUsuarios buzones = new BuzonesUsuarios();
+    // Mensajes por página al ver un buzón
+    private static final int MENSAJES_POR_PAGINA = 10;
     // Scanner para entrada del usuario
     private static final Scanner scanner = new Scanner(System.in);
-    // Archivo para guardar los datos
+    // Archivo donde versiones anteriores guardaban los datos (se migra una vez)
     private static final String ARCHIVO_DATOS = "chat_data.dat";
+    // Directorio del registro de mensajes, que sustituye a ARCHIVO_DATOS
+    private static final String DIRECTORIO_REGISTRO = "chat_log";
+    // Log de usuarios y mensajes, escrito al crear cada uno
+    private static final RegistroMensajes registro = new RegistroMensajes(new File(DIRECTORIO_REGISTRO));
 
     /**
      * Método principal que inicia la aplicación
      */
     public static void main(String[] args) {
-        cargarDatos(); // Cargar datos al iniciar
+        // Cargar datos al iniciar; con el registro dañado no se sigue
+        if (!cargarDatos()) {
+            return;
+        }
 
         // Menú principal
         while (true) {
@@ -161,9 +1017,10 @@ public class ChatUsuarios {
             System.out.println("1. Registrar nuevo usuario");
             System.out.println("2. Enviar mensaje");
             System.out.println("3. Ver mensajes recibidos");
-            System.out.println("4. Buscar mensajes por palabra clave");
-            System.out.println("5. Mostrar historial completo");
-            System.out.println("6. Salir");
+            System.out.println("4. Ver mensajes enviados");
+            System.out.println("5. Buscar mensajes por palabra clave");
+            System.out.println("6. Mostrar historial completo");
+            System.out.println("7. Salir");
             System.out.print("Seleccione opción: ");
 
             try {
@@ -173,9 +1030,10 @@ public class ChatUsuarios {
                     case 1: registrarUsuario(); break;
                     case 2: enviarMensaje(); break;
                     case 3: verMensajesRecibidos(); break;
-                    case 4: buscarPorPalabraClave(); break;
-                    case 5: mostrarHistorial(); break;
-                    case 6:
+                    case 4: verMensajesEnviados(); break;
+                    case 5: buscarPorPalabraClave(); break;
+                    case 6: mostrarHistorial(); break;
+                    case 7:
                         guardarDatos();
                         System.out.println("Saliendo del sistema...");
                         return;
@@ -199,13 +1057,18 @@ public class ChatUsuarios {
 
         try {
             Usuario nuevo = new Usuario(nombre);
-            if (usuarios.add(nuevo)) {
-                System.out.println("Usuario registrado exitosamente");
-            } else {
+            if (usuarios.contains(nuevo)) {
                 System.out.println("El usuario ya existe");
+            } else {
+                // Primero el registro: si falla, el usuario no llega a existir
+                registro.registrarUsuario(nuevo.getNombre());
+                usuarios.add(nuevo);
+                System.out.println("Usuario registrado exitosamente");
             }
         } catch (IllegalArgumentException e) {
             System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error al guardar el usuario: " + e.getMessage());
         }
     }
 
@@ -231,9 +1094,17 @@ public class ChatUsuarios {
         System.out.print("Ingrese el mensaje: ");
         String texto = scanner.nextLine();
 
-        // Crear y guardar el mensaje
+        // Crear y guardar el mensaje; solo se muestra si ha llegado al registro
         Mensaje mensaje = new Mensaje(emisor, receptor, texto);
+        try {
+            registro.registrarMensaje(mensaje);
+        } catch (IOException e) {
+            System.out.println("Error al guardar el mensaje: " + e.getMessage());
+            return;
+        }
         mensajes.add(mensaje);
+        indice.indexar(mensajes.size() - 1, texto);
+        buzones.registrar(mensajes.size() - 1, mensaje);
         System.out.println("Mensaje enviado correctamente");
     }
 
@@ -251,30 +1122,70 @@ public class ChatUsuarios {
      */
     private static void verMensajesRecibidos() {
         System.out.print("\nIngrese su nombre (receptor): ");
-        String receptor = scanner.nextLine();
+        verBuzon(scanner.nextLine(), true);
+    }
 
-        if (!usuarioExiste(receptor)) {
+    /**
+     * Muestra los mensajes enviados por un usuario
+     */
+    private static void verMensajesEnviados() {
+        System.out.print("\nIngrese su nombre (emisor): ");
+        verBuzon(scanner.nextLine(), false);
+    }
+
+    /**
+     * Muestra un buzón por páginas, leyendo solo los mensajes de ese usuario
+     * @param usuario Nombre del usuario
+     * @param recibidos true para los recibidos, false para los enviados
+     */
+    private static void verBuzon(String usuario, boolean recibidos) {
+        if (!usuarioExiste(usuario)) {
             System.out.println("Usuario no encontrado");
             return;
         }
 
-        System.out.println("\n=== MENSAJES RECIBIDOS ===");
-        mensajes.stream()
-                .filter(m -> m.getReceptor().equalsIgnoreCase(receptor))
-                .forEach(System.out::println);
+        int total = buzones.conta(usuario, recibidos);
+        System.out.println("\n=== MENSAJES " + (recibidos ? "RECIBIDOS" : "ENVIADOS") + " (" + total + ") ===");
+        int cursor = 0;
+        while (true) {
+            int[] pagina = buzones.pagina(usuario, recibidos, cursor, MENSAJES_POR_PAGINA);
+            for (int posicion : pagina) {
+                System.out.println(mensajes.get(posicion));
+            }
+            cursor += pagina.length;
+            if (cursor >= buzones.conta(usuario, recibidos)) {
+                return;
+            }
+            System.out.print("-- " + cursor + "/" + buzones.conta(usuario, recibidos)
+                    + " -- Enter para ver más, 'q' para volver: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+        }
     }
 
     /**
-     * Busca mensajes que contengan una palabra clave
+     * Busca mensajes por palabras completas usando el índice invertido.
+     * Muestra los más recientes primero.
      */
     private static void buscarPorPalabraClave() {
-        System.out.print("\nIngrese palabra clave a buscar: ");
-        String palabra = scanner.nextLine().toLowerCase();
+        System.out.println("\nPalabras separadas por espacios: mensajes con todas ellas.");
+        System.out.println("OR entre palabras: con cualquiera. \"Entre comillas\": frase exacta.");
+        System.out.print("Ingrese palabras clave a buscar: ");
+        String consulta = scanner.nextLine();
 
         System.out.println("\n=== RESULTADOS DE BÚSQUEDA ===");
-        mensajes.stream()
-                .filter(m -> m.getTexto().toLowerCase().contains(palabra))
-                .forEach(System.out::println);
+        int[] encontrados = indice.buscar(consulta, MAX_RESULTADOS, i -> mensajes.get(i).getTexto());
+        if (encontrados.length == 0) {
+            System.out.println("No se encontraron mensajes");
+            return;
+        }
+        for (int posicion : encontrados) {
+            System.out.println(mensajes.get(posicion));
+        }
+        if (encontrados.length == MAX_RESULTADOS) {
+            System.out.println("(Se muestran los " + MAX_RESULTADOS + " más recientes)");
+        }
     }
 
     /**
@@ -301,31 +1212,110 @@ public class ChatUsuarios {
     }
 
     /**
-     * Guarda los datos (usuarios y mensajes) en archivo binario
+     * Carga usuarios y mensajes recorriendo el registro de mensajes.
+     * Si aún no hay registro pero sí un chat_data.dat de versiones
+     * anteriores, se pasa antes su contenido al registro.
+     * Si la carga falla a mitad no se continúa: los datos quedarían a medias
+     * y los mensajes nuevos se añadirían a un registro dañado.
+     * @return true si se puede iniciar el chat
      */
-    @SuppressWarnings("unchecked")
-    private static void cargarDatos() {
+    private static boolean cargarDatos() {
         File archivo = new File(ARCHIVO_DATOS);
-        if (!archivo.exists()) return;
+        try {
+            if (archivo.exists() && !registro.existe()) {
+                migrarArchivoAntiguo(archivo);
+            }
+            long registros = registro.abrir();
+            if (registro.getBytesDescartados() > 0) {
+                System.out.println("Aviso: se descartaron " + registro.getBytesDescartados()
+                        + " bytes incompletos al final del registro");
+            }
+            if (registros == 0) {
+                return true;
+            }
+            registro.recorrer(0, new RegistroMensajes.Lector() {
+                @Override
+                public void usuario(String nombre) {
+                    usuarios.add(new Usuario(nombre));
+                }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(ARCHIVO_DATOS))) {
-            usuarios = (Set<Usuario>) ois.readObject();
-            mensajes = (List<Mensaje>) ois.readObject();
+                @Override
+                public void mensaje(Mensaje mensaje) {
+                    mensajes.add(mensaje);
+                }
+            });
+            indexarMensajes();
             System.out.println("Datos cargados correctamente");
-        } catch (Exception e) {
+            return true;
+        } catch (IOException e) {
             System.out.println("Error al cargar datos: " + e.getMessage());
+            System.out.println("El chat no se inicia para no escribir sobre un registro incompleto."
+                    + " Revise el directorio " + DIRECTORIO_REGISTRO);
+            return false;
+        }
+    }
+
+    /**
+     * Copia usuarios y mensajes de chat_data.dat a un registro nuevo.
+     * El registro se escribe en un directorio temporal que se renombra al
+     * terminar, así que una caída a mitad deja el archivo antiguo intacto y
+     * la migración se repite al volver a arrancar.
+     * @param archivo chat_data.dat
+     * @throws IOException Si no se puede leer el archivo o escribir el registro
+     */
+    @SuppressWarnings("unchecked")
+    private static void migrarArchivoAntiguo(File archivo) throws IOException {
+        Set<Usuario> antiguos;
+        List<Mensaje> mensajesAntiguos;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(archivo))) {
+            antiguos = (Set<Usuario>) ois.readObject();
+            mensajesAntiguos = (List<Mensaje>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Formato de " + archivo.getName() + " no reconocido");
+        }
+        File temporal = new File(DIRECTORIO_REGISTRO + ".migracion");
+        File[] restos = temporal.listFiles();
+        if (restos != null) {
+            for (File resto : restos) {
+                Files.delete(resto.toPath());
+            }
+        }
+        try (RegistroMensajes nuevo = new RegistroMensajes(temporal)) {
+            for (Usuario usuario : antiguos) {
+                nuevo.registrarUsuario(usuario.getNombre());
+            }
+            for (Mensaje mensaje : mensajesAntiguos) {
+                nuevo.registrarMensaje(mensaje);
+            }
+        }
+        if (!temporal.isDirectory() && !temporal.mkdirs()) {
+            throw new IOException("No se pudo crear " + temporal);
+        }
+        Files.deleteIfExists(Paths.get(DIRECTORIO_REGISTRO));
+        Files.move(temporal.toPath(), Paths.get(DIRECTORIO_REGISTRO), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(archivo.toPath(), Paths.get(ARCHIVO_DATOS + ".migrado"), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Datos de " + archivo.getName() + " pasados al registro de mensajes");
+    }
+
+    // Reconstruye el índice de búsqueda y los buzones con los mensajes cargados
+    private static void indexarMensajes() {
+        indice.vaciar();
+        buzones.vaciar();
+        for (int i = 0; i < mensajes.size(); i++) {
+            indice.indexar(i, mensajes.get(i).getTexto());
+            buzones.registrar(i, mensajes.get(i));
         }
     }
 
     /**
-     * Carga los datos desde archivo binario
+     * Vuelca a disco lo que quede pendiente del registro al salir.
+     * Usuarios y mensajes ya se escribieron al crearlos.
      */
     private static void guardarDatos() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ARCHIVO_DATOS))) {
-            oos.writeObject(usuarios);
-            oos.writeObject(mensajes);
+        try {
+            registro.close();
             System.out.println("Datos guardados correctamente");
-        } catch (Exception e) {
+        } catch (IOException e) {
             System.out.println("Error al guardar datos: " + e.getMessage());
         }
     }
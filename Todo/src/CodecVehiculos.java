@@ -0,0 +1,198 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Formato binario propio para la instantánea de vehículos, en lugar de la
+ * serialización de Java (que guarda descriptores de clase y depende de la
+ * versión de cada clase).
+ *
+ * Estructura del fichero (big-endian):
+ * <pre>
+ *   int    MAGIA ("PRKV")
+ *   byte   versión del formato
+ *   int    nº de marcas,  y cada marca en writeUTF
+ *   int    nº de modelos, y cada modelo en writeUTF
+ *   int    nº de vehículos, y un registro fijo de 15 bytes por vehículo:
+ *          int matrícula codificada | int índice de marca | int índice de modelo
+ *          | short año | byte velocidad
+ * </pre>
+ * Un índice -1 representa una marca o modelo nulo.
+ */
+public class CodecVehiculos {
+    /** Primeros bytes de un fichero en este formato. */
+    public static final int MAGIA = 0x50524B56;
+    /** Versión que escribe esta clase. */
+    public static final byte VERSION = 1;
+    /** Bytes de cada registro de vehículo. */
+    public static final int TAMANO_REGISTRO = 15;
+
+    // Registros que se leen o escriben de una vez
+    private static final int REGISTROS_POR_BLOQUE = 4096;
+
+    private CodecVehiculos() {
+    }
+
+    /**
+     * Escribe los vehículos en el formato binario.
+     * @param vehiculos Vehículos a guardar (no deben cambiar mientras se escriben)
+     * @param salida Flujo de destino (no se cierra)
+     * @throws IOException Si falla la escritura o algún dato no cabe en el formato
+     */
+    public static void escribir(Collection<Vehiculo> vehiculos, OutputStream salida) throws IOException {
+        Map<String, Integer> marcas = new LinkedHashMap<>();
+        Map<String, Integer> modelos = new LinkedHashMap<>();
+        for (Vehiculo v : vehiculos) {
+            indiceDe(marcas, v.getMarca());
+            indiceDe(modelos, v.getModelo());
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(salida, 1 << 16));
+        out.writeInt(MAGIA);
+        out.writeByte(VERSION);
+        escribirDiccionario(out, marcas.keySet());
+        escribirDiccionario(out, modelos.keySet());
+        out.writeInt(vehiculos.size());
+
+        ByteBuffer bloque = ByteBuffer.allocate(TAMANO_REGISTRO * REGISTROS_POR_BLOQUE);
+        int escritos = 0;
+        for (Vehiculo v : vehiculos) {
+            int anio = v.getAñoFabricacion();
+            if (anio < Short.MIN_VALUE || anio > Short.MAX_VALUE) {
+                throw new IOException("Año de fabricación fuera de rango en " + v.getMatricula() + ": " + anio);
+            }
+            bloque.putInt(Vehiculo.codificarMatricula(v.getMatricula()));
+            bloque.putInt(indiceDe(marcas, v.getMarca()));
+            bloque.putInt(indiceDe(modelos, v.getModelo()));
+            bloque.putShort((short) anio);
+            bloque.put((byte) v.getVelocidadActual());
+            if (!bloque.hasRemaining()) {
+                out.write(bloque.array(), 0, bloque.position());
+                bloque.clear();
+            }
+            escritos++;
+        }
+        out.write(bloque.array(), 0, bloque.position());
+        out.flush();
+        if (escritos != vehiculos.size()) {
+            throw new IOException("La colección cambió mientras se escribía");
+        }
+    }
+
+    /**
+     * Lee un fichero en el formato binario y añade sus vehículos al mapa.
+     * @param entrada Flujo de origen, ya situado tras la MAGIA (no se cierra)
+     * @param destino Mapa donde se guardan los vehículos
+     * @throws IOException Si el fichero está dañado o es de una versión posterior
+     */
+    public static void leer(DataInputStream entrada, Map<String, Vehiculo> destino) throws IOException {
+        Cabecera cabecera = leerCabecera(entrada);
+        byte[] bloque = new byte[TAMANO_REGISTRO * REGISTROS_POR_BLOQUE];
+        ByteBuffer registros = ByteBuffer.wrap(bloque);
+        int pendientes = cabecera.numVehiculos;
+        while (pendientes > 0) {
+            int enBloque = Math.min(pendientes, REGISTROS_POR_BLOQUE);
+            entrada.readFully(bloque, 0, enBloque * TAMANO_REGISTRO);
+            registros.clear();
+            for (int i = 0; i < enBloque; i++) {
+                Vehiculo v = cabecera.leerRegistro(registros);
+                destino.put(v.getMatricula(), v);
+            }
+            pendientes -= enBloque;
+        }
+    }
+
+    /**
+     * Lee la versión y los diccionarios; deja el flujo al principio de los registros.
+     * @param entrada Flujo de origen, ya situado tras la MAGIA
+     * @return Cabecera con los diccionarios y el número de vehículos
+     * @throws IOException Si la versión no se reconoce o el fichero está truncado
+     */
+    static Cabecera leerCabecera(DataInputStream entrada) throws IOException {
+        byte version = entrada.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Versión de formato no soportada: " + version);
+        }
+        String[] marcas = leerDiccionario(entrada);
+        String[] modelos = leerDiccionario(entrada);
+        int numVehiculos = entrada.readInt();
+        if (numVehiculos < 0) {
+            throw new IOException("Número de vehículos no válido: " + numVehiculos);
+        }
+        return new Cabecera(marcas, modelos, numVehiculos);
+    }
+
+    /**
+     * Diccionarios y número de vehículos de un fichero.
+     * Sabe convertir un registro de 15 bytes en Vehiculo.
+     */
+    static class Cabecera {
+        final String[] marcas;
+        final String[] modelos;
+        final int numVehiculos;
+
+        Cabecera(String[] marcas, String[] modelos, int numVehiculos) {
+            this.marcas = marcas;
+            this.modelos = modelos;
+            this.numVehiculos = numVehiculos;
+        }
+
+        // Lee un registro desde la posición actual del buffer
+        Vehiculo leerRegistro(ByteBuffer registros) throws IOException {
+            int codigo = registros.getInt();
+            int marca = registros.getInt();
+            int modelo = registros.getInt();
+            short anio = registros.getShort();
+            int velocidad = registros.get() & 0xFF;
+            try {
+                return new Vehiculo(Vehiculo.decodificarMatricula(codigo), entrada(marcas, marca),
+                        entrada(modelos, modelo), anio, velocidad);
+            } catch (Vehiculo.MatriculaNoValidaException | Vehiculo.VelocidadNoValidaException
+                     | IllegalArgumentException e) {
+                throw new IOException("Registro de vehículo dañado: " + e.getMessage());
+            }
+        }
+
+        private static String entrada(String[] diccionario, int indice) throws IOException {
+            if (indice == -1) {
+                return null;
+            }
+            if (indice < 0 || indice >= diccionario.length) {
+                throw new IOException("Índice de diccionario fuera de rango: " + indice);
+            }
+            return diccionario[indice];
+        }
+    }
+
+    // Posición del texto en el diccionario, añadiéndolo si es nuevo (-1 para null)
+    private static int indiceDe(Map<String, Integer> diccionario, String texto) {
+        if (texto == null) {
+            return -1;
+        }
+        Integer indice = diccionario.get(texto);
+        if (indice == null) {
+            indice = diccionario.size();
+            diccionario.put(texto, indice);
+        }
+        return indice;
+    }
+
+    private static void escribirDiccionario(DataOutputStream out, Collection<String> textos) throws IOException {
+        out.writeInt(textos.size());
+        for (String texto : textos) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String[] leerDiccionario(DataInputStream in) throws IOException {
+        int tamano = in.readInt();
+        if (tamano < 0) {
+            throw new IOException("Tamaño de diccionario no válido: " + tamano);
+        }
+        String[] textos = new String[tamano];
+        for (int i = 0; i < tamano; i++) {
+            textos[i] = in.readUTF();
+        }
+        return textos;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Codificación de lecturas al estilo Gorilla (Facebook, 2015):
+ * <ul>
+ *   <li>Instantes: el primero entero y después la diferencia entre deltas
+ *       consecutivos, que con lecturas periódicas casi siempre es 0 (1 bit).</li>
+ *   <li>Temperaturas: XOR con el valor anterior; si son iguales basta 1 bit
+ *       y si no se guardan solo los bits significativos del XOR.</li>
+ * </ul>
+ * Las temperaturas son float, así que el XOR trabaja sobre 32 bits.
+ * La decodificación va entregando cada lectura a un consumidor, sin crear
+ * objetos, de modo que se pueden calcular agregados al vuelo.
+ */
+class CodificadorGorilla {
+    private CodificadorGorilla() {
+    }
+
+    /**
+     * Codifica un tramo de lecturas
+     * @param instantes Instantes (milisegundos desde epoch)
+     * @param temperaturas Temperaturas
+     * @param desde Primera lectura (incluida)
+     * @param hasta Última lectura (excluida)
+     * @return Bytes codificados
+     */
+    static byte[] codificar(long[] instantes, float[] temperaturas, int desde, int hasta) {
+        EscritorBits out = new EscritorBits((hasta - desde) * 2 + 16);
+        if (hasta <= desde) {
+            return out.aBytes();
+        }
+        long instanteAnterior = instantes[desde];
+        int bitsAnteriores = Float.floatToRawIntBits(temperaturas[desde]);
+        out.escribir(instanteAnterior, 64);
+        out.escribir(bitsAnteriores, 32);
+        long deltaAnterior = 0;
+        int ceros = -1;      // Ceros iniciales de la ventana de bits vigente (-1 = ninguna)
+        int finais = 0;      // Ceros finales de la ventana de bits vigente
+        for (int i = desde + 1; i < hasta; i++) {
+            long delta = instantes[i] - instanteAnterior;
+            long dd = delta - deltaAnterior;
+            if (dd == 0) {
+                out.escribir(0, 1);
+            } else if (dd >= -63 && dd <= 64) {
+                out.escribir(0b10, 2);
+                out.escribir(dd + 63, 7);
+            } else if (dd >= -255 && dd <= 256) {
+                out.escribir(0b110, 3);
+                out.escribir(dd + 255, 9);
+            } else if (dd >= -2047 && dd <= 2048) {
+                out.escribir(0b1110, 4);
+                out.escribir(dd + 2047, 12);
+            } else {
+                out.escribir(0b1111, 4);
+                out.escribir(dd, 64);
+            }
+            instanteAnterior = instantes[i];
+            deltaAnterior = delta;
+
+            int bits = Float.floatToRawIntBits(temperaturas[i]);
+            int xor = bits ^ bitsAnteriores;
+            if (xor == 0) {
+                out.escribir(0, 1);
+            } else {
+                int cerosXor = Math.min(31, Integer.numberOfLeadingZeros(xor));
+                int finaisXor = Integer.numberOfTrailingZeros(xor);
+                if (ceros >= 0 && cerosXor >= ceros && finaisXor >= finais) {
+                    // Cabe en la ventana anterior: no hace falta repetirla
+                    out.escribir(0b10, 2);
+                    out.escribir(xor >>> finais, 32 - ceros - finais);
+                } else {
+                    int significativos = 32 - cerosXor - finaisXor;
+                    out.escribir(0b11, 2);
+                    out.escribir(cerosXor, 5);
+                    out.escribir(significativos - 1, 5);
+                    out.escribir(xor >>> finaisXor, significativos);
+                    ceros = cerosXor;
+                    finais = finaisXor;
+                }
+            }
+            bitsAnteriores = bits;
+        }
+        return out.aBytes();
+    }
+
+    /**
+     * Decodifica un bloque entregando las lecturas de [rangoDesde, rangoHasta)
+     * @param datos Bytes codificados
+     * @param longitud Bytes válidos de datos
+     * @param conta Lecturas del bloque
+     * @param rangoDesde Inicio del rango (incluido)
+     * @param rangoHasta Fin del rango (excluido)
+     * @param consumidor Destino de las lecturas
+     */
+    static void decodificar(byte[] datos, int longitud, int conta, long rangoDesde, long rangoHasta,
+                            ArquivoTemperaturas.ConsumidorLectura consumidor) {
+        if (conta == 0) {
+            return;
+        }
+        LectorBits in = new LectorBits(datos, 0, longitud);
+        long instante = in.ler(64);
+        int bits = (int) in.ler(32);
+        long delta = 0;
+        int ceros = 0;
+        int finais = 0;
+        entregar(instante, bits, rangoDesde, rangoHasta, consumidor);
+        for (int i = 1; i < conta; i++) {
+            long dd;
+            if (!in.lerBit()) {
+                dd = 0;
+            } else if (!in.lerBit()) {
+                dd = in.ler(7) - 63;
+            } else if (!in.lerBit()) {
+                dd = in.ler(9) - 255;
+            } else if (!in.lerBit()) {
+                dd = in.ler(12) - 2047;
+            } else {
+                dd = in.ler(64);
+            }
+            delta += dd;
+            instante += delta;
+
+            if (in.lerBit()) {
+                if (in.lerBit()) {
+                    ceros = (int) in.ler(5);
+                    int significativos = (int) in.ler(5) + 1;
+                    finais = 32 - ceros - significativos;
+                }
+                bits ^= (int) in.ler(32 - ceros - finais) << finais;
+            }
+            entregar(instante, bits, rangoDesde, rangoHasta, consumidor);
+        }
+    }
+
+    private static void entregar(long instante, int bits, long desde, long hasta,
+                                 ArquivoTemperaturas.ConsumidorLectura consumidor) {
+        if (instante >= desde && instante < hasta) {
+            consumidor.aceptar(instante, Float.intBitsToFloat(bits));
+        }
+    }
+}
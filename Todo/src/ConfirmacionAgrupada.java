@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agrupa los fsync de un fichero de solo añadir (group commit).
+ * El dueño vuelca cada registro al sistema operativo nada más escribirlo y
+ * avisa con registrado(); aquí se decide cuándo forzarlo a disco: al juntar
+ * un número de registros o, si no llegan más, cuando el más antiguo lleva
+ * esperando el tiempo máximo.
+ * Todos los métodos deben llamarse con el monitor del dueño tomado, que es
+ * también el que toma el temporizador antes de sincronizar.
+ */
+class ConfirmacionAgrupada {
+    /**
+     * Fuerza a disco lo escrito por el dueño
+     */
+    interface Volcado {
+        void sincronizar() throws IOException;
+    }
+
+    // Un único hilo demonio sirve los plazos de todos los ficheros
+    private static final ScheduledThreadPoolExecutor TEMPORIZADOR = crearTemporizador();
+
+    private final Object dueno;
+    private final Volcado volcado;
+    private final int registrosPorFsync;
+    private final long maxEsperaMs;
+    private int pendientes;                // Registros escritos desde el último fsync
+    private ScheduledFuture<?> plazo;      // fsync programado para el registro más antiguo
+    private IOException errorDiferido;     // Fallo del fsync programado, lo lanza comprobar()
+
+    /**
+     * Constructor
+     * @param dueno Objeto cuyo monitor protege el fichero
+     * @param volcado Fuerza a disco el fichero (y llama a sincronizado())
+     * @param registrosPorFsync Registros que se agrupan en un fsync
+     * @param maxEsperaMs Tiempo máximo que un registro puede esperar su fsync
+     */
+    ConfirmacionAgrupada(Object dueno, Volcado volcado, int registrosPorFsync, long maxEsperaMs) {
+        this.dueno = dueno;
+        this.volcado = volcado;
+        this.registrosPorFsync = registrosPorFsync;
+        this.maxEsperaMs = maxEsperaMs;
+    }
+
+    /**
+     * Se llama antes de escribir un registro: si falló el fsync programado,
+     * lanza su error sin escribir nada, de modo que un registro que se da
+     * por fallido tampoco queda en el fichero
+     * @throws IOException Error del fsync programado
+     */
+    void comprobar() throws IOException {
+        if (errorDiferido != null) {
+            IOException e = errorDiferido;
+            errorDiferido = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Anota un registro ya volcado al sistema operativo y sincroniza si toca
+     * @throws IOException Si falla el fsync
+     */
+    void registrado() throws IOException {
+        pendientes++;
+        if (pendientes >= registrosPorFsync) {
+            volcado.sincronizar();
+        } else if (plazo == null) {
+            plazo = TEMPORIZADOR.schedule(this::vencer, maxEsperaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Indica que el dueño acaba de forzar el fichero a disco
+     */
+    void sincronizado() {
+        pendientes = 0;
+        if (plazo != null) {
+            plazo.cancel(false);
+            plazo = null;
+        }
+    }
+
+    // Se ejecuta en el temporizador: sincroniza si aún quedan registros sin fsync
+    private void vencer() {
+        synchronized (dueno) {
+            plazo = null;
+            if (pendientes == 0) {
+                return;
+            }
+            try {
+                volcado.sincronizar();
+            } catch (IOException e) {
+                errorDiferido = e;
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor crearTemporizador() {
+        ScheduledThreadPoolExecutor temporizador = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread hilo = new Thread(r, "fsync-agrupado");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        temporizador.setRemoveOnCancelPolicy(true);
+        return temporizador;
+    }
+}
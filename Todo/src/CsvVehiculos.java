@@ -0,0 +1,335 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Importación y exportación masiva de vehículos en CSV con el formato
+ * matricula;marca;modelo;año;velocidad (una fila por vehículo, UTF-8).
+ *
+ * La lectura proyecta el fichero en memoria, lo parte en trozos que terminan
+ * en fin de línea y los analiza en paralelo en un ForkJoinPool. Cada fila se
+ * valida con las reglas de Vehiculo directamente sobre los bytes, sin crear
+ * Strings ni excepciones para las filas erróneas.
+ *
+ * El formato no tiene comillas ni escapes, así que el exportador omite los
+ * vehículos cuya marca o modelo contiene ';' o un salto de línea: el
+ * importador no podría volver a leerlos. Una marca o modelo nulo se escribe
+ * como campo vacío (y se vuelve a leer como texto vacío).
+ */
+public class CsvVehiculos {
+    // Cabecera que escribe el exportador (y que el importador se salta)
+    private static final String CABECERA = "matricula;marca;modelo;año;velocidad";
+    private static final byte SEPARADOR = ';';
+    // Tamaño aproximado de cada trozo que analiza una tarea
+    private static final int TAMANO_TROZO = 8 << 20;
+
+    private CsvVehiculos() {
+    }
+
+    /**
+     * Resultado de una lectura: vehículos válidos (en el orden del fichero)
+     * y número de filas descartadas por no cumplir las validaciones.
+     */
+    public static class Lectura {
+        private final List<Vehiculo> vehiculos;
+        private final long filasErroneas;
+
+        Lectura(List<Vehiculo> vehiculos, long filasErroneas) {
+            this.vehiculos = vehiculos;
+            this.filasErroneas = filasErroneas;
+        }
+
+        public List<Vehiculo> getVehiculos() {
+            return vehiculos;
+        }
+
+        public long getFilasErroneas() {
+            return filasErroneas;
+        }
+    }
+
+    /**
+     * Resultado de una escritura: filas escritas y vehículos omitidos porque
+     * su marca o modelo no se puede representar en el CSV.
+     */
+    public static class Escritura {
+        private final long filas;
+        private final long omitidos;
+
+        Escritura(long filas, long omitidos) {
+            this.filas = filas;
+            this.omitidos = omitidos;
+        }
+
+        public long getFilas() {
+            return filas;
+        }
+
+        public long getOmitidos() {
+            return omitidos;
+        }
+    }
+
+    /**
+     * Lee y valida un CSV de vehículos en paralelo.
+     * @param ruta Fichero a leer
+     * @return Vehículos válidos y número de filas erróneas
+     * @throws IOException Si no se puede leer el fichero
+     */
+    public static Lectura leer(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long[] limites = calcularLimites(canal);
+            return ForkJoinPool.commonPool().invoke(new TareaTrozos(canal, limites, 0, limites.length - 1));
+        }
+    }
+
+    /**
+     * Escribe los vehículos en CSV fila a fila, sin copiar la colección.
+     * Los que tienen ';' o saltos de línea en la marca o el modelo se omiten.
+     * @param vehiculos Vehículos a exportar
+     * @param ruta Fichero de destino
+     * @return Filas escritas y vehículos omitidos
+     * @throws IOException Si falla la escritura
+     */
+    public static Escritura escribir(Collection<Vehiculo> vehiculos, Path ruta) throws IOException {
+        long filas = 0;
+        long omitidos = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(ruta, StandardCharsets.UTF_8)) {
+            out.write(CABECERA);
+            out.newLine();
+            for (Vehiculo v : vehiculos) {
+                if (!esCampoExportable(v.getMarca()) || !esCampoExportable(v.getModelo())) {
+                    omitidos++;
+                    continue;
+                }
+                out.write(v.getMatricula());
+                out.write(SEPARADOR);
+                out.write(Objects.toString(v.getMarca(), ""));
+                out.write(SEPARADOR);
+                out.write(Objects.toString(v.getModelo(), ""));
+                out.write(SEPARADOR);
+                out.write(Integer.toString(v.getAñoFabricacion()));
+                out.write(SEPARADOR);
+                out.write(Integer.toString(v.getVelocidadActual()));
+                out.newLine();
+                filas++;
+            }
+        }
+        return new Escritura(filas, omitidos);
+    }
+
+    // Un campo de texto se puede exportar si no contiene el separador ni saltos de línea
+    // (null se exporta como campo vacío)
+    private static boolean esCampoExportable(String campo) {
+        if (campo == null) {
+            return true;
+        }
+        for (int i = 0; i < campo.length(); i++) {
+            char c = campo.charAt(i);
+            if (c == SEPARADOR || c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Posiciones de corte: cada trozo empieza justo después de un salto de línea
+    private static long[] calcularLimites(FileChannel canal) throws IOException {
+        long tamano = canal.size();
+        List<Long> limites = new ArrayList<>();
+        limites.add(0L);
+        ByteBuffer lectura = ByteBuffer.allocate(4096);
+        long posicion = TAMANO_TROZO;
+        while (posicion < tamano) {
+            long corte = siguienteLinea(canal, posicion, lectura);
+            if (corte >= tamano) {
+                break;
+            }
+            limites.add(corte);
+            posicion = corte + TAMANO_TROZO;
+        }
+        limites.add(tamano);
+        long[] resultado = new long[limites.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = limites.get(i);
+        }
+        return resultado;
+    }
+
+    // Posición siguiente al primer '\n' a partir de la indicada (o el final del fichero)
+    private static long siguienteLinea(FileChannel canal, long desde, ByteBuffer lectura) throws IOException {
+        long posicion = desde;
+        while (true) {
+            lectura.clear();
+            int leidos = canal.read(lectura, posicion);
+            if (leidos <= 0) {
+                return canal.size();
+            }
+            for (int i = 0; i < leidos; i++) {
+                if (lectura.get(i) == '\n') {
+                    return posicion + i + 1;
+                }
+            }
+            posicion += leidos;
+        }
+    }
+
+    /**
+     * Tarea que divide el rango de trozos por la mitad hasta quedarse con uno,
+     * lo analiza y une los resultados manteniendo el orden del fichero.
+     */
+    private static class TareaTrozos extends RecursiveTask<Lectura> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel canal;
+        private final long[] limites;
+        private final int desde;
+        private final int hasta;
+
+        TareaTrozos(FileChannel canal, long[] limites, int desde, int hasta) {
+            this.canal = canal;
+            this.limites = limites;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Lectura compute() {
+            if (hasta - desde == 1) {
+                try {
+                    return analizarTrozo(canal, limites[desde], limites[hasta]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int medio = (desde + hasta) >>> 1;
+            TareaTrozos izquierda = new TareaTrozos(canal, limites, desde, medio);
+            izquierda.fork();
+            Lectura derecha = new TareaTrozos(canal, limites, medio, hasta).compute();
+            Lectura primera = izquierda.join();
+            primera.vehiculos.addAll(derecha.vehiculos);
+            return new Lectura(primera.vehiculos, primera.filasErroneas + derecha.filasErroneas);
+        }
+    }
+
+    // Analiza las líneas completas de [inicio, fin) leyendo la proyección directamente
+    private static Lectura analizarTrozo(FileChannel canal, long inicio, long fin) throws IOException {
+        List<Vehiculo> vehiculos = new ArrayList<>();
+        long erroneas = 0;
+        if (fin <= inicio) {
+            return new Lectura(vehiculos, 0);
+        }
+        MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+        int tamano = datos.limit();
+
+        int[] separadores = new int[4];
+        // Solo se copian los campos de texto, y solo para crear sus Strings
+        byte[] campo = new byte[256];
+        int linea = 0;
+        while (linea < tamano) {
+            int finLinea = linea;
+            while (finLinea < tamano && datos.get(finLinea) != '\n') {
+                finLinea++;
+            }
+            int ultimo = finLinea;
+            if (ultimo > linea && datos.get(ultimo - 1) == '\r') {
+                ultimo--;
+            }
+            boolean cabecera = inicio == 0 && linea == 0 && empiezaPorCabecera(datos, ultimo);
+            if (ultimo > linea && !cabecera) {
+                if (ultimo - linea > campo.length) {
+                    campo = new byte[Math.max(ultimo - linea, campo.length * 2)];
+                }
+                Vehiculo v = analizarFila(datos, linea, ultimo, separadores, campo);
+                if (v == null) {
+                    erroneas++;
+                } else {
+                    vehiculos.add(v);
+                }
+            }
+            linea = finLinea + 1;
+        }
+        return new Lectura(vehiculos, erroneas);
+    }
+
+    // Convierte una fila en vehículo, o devuelve null si algún campo no es válido.
+    // campo es un buffer de trabajo con sitio para la fila entera
+    private static Vehiculo analizarFila(ByteBuffer datos, int inicio, int fin, int[] separadores, byte[] campo) {
+        int encontrados = 0;
+        for (int i = inicio; i < fin; i++) {
+            if (datos.get(i) == SEPARADOR) {
+                if (encontrados == 4) {
+                    return null;
+                }
+                separadores[encontrados++] = i;
+            }
+        }
+        if (encontrados != 4) {
+            return null;
+        }
+        datos.get(inicio, campo, 0, separadores[0] - inicio);
+        if (!Vehiculo.esMatriculaValida(campo, 0, separadores[0] - inicio)) {
+            return null;
+        }
+        int anio = leerEntero(datos, separadores[2] + 1, separadores[3]);
+        int velocidad = leerEntero(datos, separadores[3] + 1, fin);
+        if (anio == Integer.MIN_VALUE || !Vehiculo.esVelocidadValida(velocidad)) {
+            return null;
+        }
+        String matricula = new String(campo, 0, 7, StandardCharsets.US_ASCII);
+        String marca = texto(datos, separadores[0] + 1, separadores[1], campo);
+        String modelo = texto(datos, separadores[1] + 1, separadores[2], campo);
+        try {
+            return new Vehiculo(matricula, marca, modelo, anio, velocidad);
+        } catch (Vehiculo.MatriculaNoValidaException | Vehiculo.VelocidadNoValidaException e) {
+            // No ocurre: los campos ya se han validado arriba
+            return null;
+        }
+    }
+
+    // Campo de texto UTF-8 de [inicio, fin)
+    private static String texto(ByteBuffer datos, int inicio, int fin, byte[] campo) {
+        datos.get(inicio, campo, 0, fin - inicio);
+        return new String(campo, 0, fin - inicio, StandardCharsets.UTF_8);
+    }
+
+    // Entero decimal (con signo opcional) o Integer.MIN_VALUE si no es un número
+    private static int leerEntero(ByteBuffer datos, int inicio, int fin) {
+        boolean negativo = inicio < fin && datos.get(inicio) == '-';
+        int i = negativo ? inicio + 1 : inicio;
+        if (i == fin || fin - i > 9) {
+            return Integer.MIN_VALUE;
+        }
+        int valor = 0;
+        for (; i < fin; i++) {
+            byte b = datos.get(i);
+            if (b < '0' || b > '9') {
+                return Integer.MIN_VALUE;
+            }
+            valor = valor * 10 + (b - '0');
+        }
+        return negativo ? -valor : valor;
+    }
+
+    // La primera línea se ignora si es la cabecera del exportador
+    private static boolean empiezaPorCabecera(ByteBuffer datos, int fin) {
+        byte[] cabecera = "matricula".getBytes(StandardCharsets.US_ASCII);
+        if (fin < cabecera.length) {
+            return false;
+        }
+        for (int i = 0; i < cabecera.length; i++) {
+            if (Character.toLowerCase(datos.get(i)) != cabecera[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * Diario de operaciones (write-ahead log) del parking.
+ * Cada alta, baja, modificación o cambio de velocidad se añade al final del fichero como un
+ * registro compacto, así que persistir una operación cuesta lo mismo tenga el
+ * parking diez vehículos o un millón.
+ * Cada registro se vuelca al sistema operativo al escribirlo; el fsync se
+ * agrupa (cada 32 registros o, como mucho, 200 ms después de escribirlo).
+ * Los métodos están sincronizados para que varios hilos puedan escribir en él.
+ */
+public class DiarioParking implements Closeable {
+    // Tipos de registro que se escriben en el diario
+    private static final byte BAJA = 2;
+    private static final byte VELOCIDAD = 3;
+    private static final byte ALTA = 5;
+    private static final byte MODIFICACION = 6;
+    // Alta y modificación de versiones anteriores, sin marca de texto nulo (solo se leen)
+    private static final byte ALTA_ANTIGUA = 1;
+    private static final byte MODIFICACION_ANTIGUA = 4;
+
+    // Registros que se agrupan antes de forzar el volcado a disco (group commit)
+    private static final int REGISTROS_POR_FSYNC = 32;
+    // Tiempo máximo que un registro ya escrito espera su fsync si no llegan más
+    private static final long MAX_ESPERA_FSYNC_MS = 200;
+
+    private final File fichero;
+    private FileOutputStream fos;
+    private DataOutputStream salida;
+    private final ConfirmacionAgrupada confirmacion =
+            new ConfirmacionAgrupada(this, this::sincronizar, REGISTROS_POR_FSYNC, MAX_ESPERA_FSYNC_MS);
+    private int registrosDesdeInstantanea; // Registros acumulados desde la última compactación
+    private long longitudValida;           // Bytes del fichero que ocupan los registros completos
+    private boolean colaDudosa;            // Falló una escritura: puede haber un registro a medias
+
+    /**
+     * Constructor del diario.
+     * @param nombreFichero Ruta del fichero de diario
+     */
+    public DiarioParking(String nombreFichero) {
+        this.fichero = new File(nombreFichero);
+    }
+
+    /**
+     * Registra el alta de un vehículo con todos sus datos.
+     * @param v Vehículo añadido
+     * @throws IOException Si falla la escritura
+     */
+    public synchronized void registrarAlta(Vehiculo v) throws IOException {
+        registrarCompleto(ALTA, v);
+    }
+
+    /**
+     * Registra la modificación de los datos de un vehículo, antes de aplicarla.
+     * @param matricula Matrícula del vehículo
+     * @param marca Nueva marca
+     * @param modelo Nuevo modelo
+     * @param añoFabricacion Nuevo año de fabricación
+     * @param velocidad Velocidad actual
+     * @throws IOException Si falla la escritura
+     */
+    public synchronized void registrarModificacion(String matricula, String marca, String modelo,
+                                                   int añoFabricacion, int velocidad) throws IOException {
+        registrarCompleto(MODIFICACION, matricula, marca, modelo, añoFabricacion, velocidad);
+    }
+
+    // Escribe un registro con todos los datos del vehículo
+    private void registrarCompleto(byte tipo, Vehiculo v) throws IOException {
+        registrarCompleto(tipo, v.getMatricula(), v.getMarca(), v.getModelo(),
+                v.getAñoFabricacion(), v.getVelocidadActual());
+    }
+
+    private void registrarCompleto(byte tipo, String matricula, String marca, String modelo,
+                                   int añoFabricacion, int velocidad) throws IOException {
+        ByteArrayOutputStream registro = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(registro);
+        out.writeByte(tipo);
+        out.writeUTF(matricula);
+        escribirTexto(out, marca);
+        escribirTexto(out, modelo);
+        out.writeShort(añoFabricacion);
+        out.writeByte(velocidad);
+        escribir(registro);
+    }
+
+    /**
+     * Registra la baja de un vehículo.
+     * @param matricula Matrícula del vehículo eliminado
+     * @throws IOException Si falla la escritura
+     */
+    public synchronized void registrarBaja(String matricula) throws IOException {
+        ByteArrayOutputStream registro = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(registro);
+        out.writeByte(BAJA);
+        out.writeUTF(matricula);
+        escribir(registro);
+    }
+
+    /**
+     * Registra la nueva velocidad de un vehículo.
+     * Se guarda el valor absoluto y no el incremento para que reproducir el
+     * diario dos veces sobre la misma instantánea dé el mismo resultado.
+     * @param matricula Matrícula del vehículo
+     * @param velocidad Velocidad tras el cambio
+     * @throws IOException Si falla la escritura
+     */
+    public synchronized void registrarVelocidad(String matricula, int velocidad) throws IOException {
+        ByteArrayOutputStream registro = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(registro);
+        out.writeByte(VELOCIDAD);
+        out.writeUTF(matricula);
+        out.writeByte(velocidad);
+        escribir(registro);
+    }
+
+    /**
+     * Fuerza a disco todos los registros pendientes.
+     * @throws IOException Si falla el volcado
+     */
+    public synchronized void sincronizar() throws IOException {
+        if (salida == null) {
+            return;
+        }
+        salida.flush();
+        fos.getFD().sync();
+        confirmacion.sincronizado();
+    }
+
+    /**
+     * Aplica sobre el mapa todas las operaciones del diario, en orden.
+     * Un registro incompleto al final (caída a mitad de escritura) se descarta
+     * y se recorta del fichero para que las nuevas escrituras no queden detrás.
+     * @param vehiculos Mapa cargado desde la última instantánea
+     * @return Número de operaciones aplicadas
+     * @throws IOException Si no se puede leer el fichero
+     */
+    public synchronized int reproducir(Map<String, Vehiculo> vehiculos) throws IOException {
+        close();
+        if (!fichero.exists()) {
+            return 0;
+        }
+        // El diario se compacta periódicamente, así que cabe en memoria sin problema
+        byte[] contenido = Files.readAllBytes(fichero.toPath());
+        ByteArrayInputStream bytes = new ByteArrayInputStream(contenido);
+        DataInputStream in = new DataInputStream(bytes);
+        int aplicadas = 0;
+        long posicionValida = 0;
+        try {
+            while (bytes.available() > 0) {
+                byte tipo = in.readByte();
+                if (tipo == ALTA || tipo == MODIFICACION || tipo == ALTA_ANTIGUA || tipo == MODIFICACION_ANTIGUA) {
+                    boolean antiguo = tipo == ALTA_ANTIGUA || tipo == MODIFICACION_ANTIGUA;
+                    String matricula = in.readUTF();
+                    String marca = antiguo ? in.readUTF() : leerTexto(in);
+                    String modelo = antiguo ? in.readUTF() : leerTexto(in);
+                    int anio = in.readShort();
+                    int velocidad = in.readUnsignedByte();
+                    try {
+                        vehiculos.put(matricula, new Vehiculo(matricula, marca, modelo, anio, velocidad));
+                    } catch (Vehiculo.MatriculaNoValidaException | Vehiculo.VelocidadNoValidaException e) {
+                        System.out.println("⚠️ Registro de vehículo ignorado: " + e.getMessage());
+                    }
+                } else if (tipo == BAJA) {
+                    vehiculos.remove(in.readUTF());
+                } else if (tipo == VELOCIDAD) {
+                    String matricula = in.readUTF();
+                    int velocidad = in.readUnsignedByte();
+                    Vehiculo v = vehiculos.get(matricula);
+                    if (v != null) {
+                        try {
+                            v.setVelocidadActual(velocidad);
+                        } catch (Vehiculo.VelocidadNoValidaException e) {
+                            System.out.println("⚠️ Registro de velocidad ignorado: " + e.getMessage());
+                        }
+                    }
+                } else {
+                    // Basura al final del fichero: se trata como cola rota
+                    break;
+                }
+                aplicadas++;
+                posicionValida = contenido.length - bytes.available();
+            }
+        } catch (EOFException e) {
+            // Último registro a medio escribir: se descarta
+        }
+        if (posicionValida < contenido.length) {
+            recortar(posicionValida);
+        }
+        colaDudosa = false;
+        registrosDesdeInstantanea = aplicadas;
+        return aplicadas;
+    }
+
+    /**
+     * Vacía el diario tras escribir una instantánea completa.
+     * @throws IOException Si no se puede truncar el fichero
+     */
+    public synchronized void truncar() throws IOException {
+        close();
+        try (FileOutputStream vacio = new FileOutputStream(fichero)) {
+            vacio.getFD().sync();
+        }
+        colaDudosa = false;
+        registrosDesdeInstantanea = 0;
+    }
+
+    /**
+     * Obtiene cuántos registros se han acumulado desde la última instantánea.
+     * @return Número de registros
+     */
+    public synchronized int getRegistrosDesdeInstantanea() {
+        return registrosDesdeInstantanea;
+    }
+
+    /**
+     * Vuelca lo pendiente y cierra el fichero.
+     * @throws IOException Si falla el volcado
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (salida == null) {
+            return;
+        }
+        try {
+            sincronizar();
+        } finally {
+            salida.close();
+            salida = null;
+            fos = null;
+        }
+    }
+
+    // Abre el fichero en modo añadir la primera vez que se escribe. Tras una
+    // escritura fallida recorta antes lo que hubiera quedado a medias.
+    private DataOutputStream abrir() throws IOException {
+        confirmacion.comprobar();
+        if (salida == null) {
+            if (colaDudosa) {
+                recortar(longitudValida);
+                colaDudosa = false;
+            } else {
+                longitudValida = fichero.length();
+            }
+            fos = new FileOutputStream(fichero, true);
+            salida = new DataOutputStream(new BufferedOutputStream(fos));
+        }
+        return salida;
+    }
+
+    // El registro se codifica entero antes de escribirlo, así que un fallo al codificarlo
+    // no deja nada en el fichero; si falla la escritura, lo que llegara a escribirse se
+    // recorta antes del siguiente registro. Cada registro llega al sistema operativo al
+    // escribirlo (sobrevive a una caída del proceso); el fsync se agrupa por número de
+    // registros o por tiempo
+    private void escribir(ByteArrayOutputStream registro) throws IOException {
+        DataOutputStream out = abrir();
+        try {
+            registro.writeTo(out);
+            out.flush();
+            confirmacion.registrado();
+        } catch (IOException e) {
+            descartarSalida();
+            colaDudosa = true;
+            throw e;
+        }
+        longitudValida += registro.size();
+        registrosDesdeInstantanea++;
+    }
+
+    // Cierra el fichero tras un fallo sin volcar lo que quede en el buffer
+    private void descartarSalida() {
+        try {
+            fos.close();
+        } catch (IOException e) {
+            // El flujo ya había fallado
+        }
+        salida = null;
+        fos = null;
+    }
+
+    private void recortar(long longitud) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fichero, "rw")) {
+            raf.setLength(longitud);
+        }
+    }
+
+    // Marca y modelo pueden ser null: un byte indica si el texto está
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
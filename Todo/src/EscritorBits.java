@@ -0,0 +1,56 @@
+import java.util.Arrays;
+
+/**
+ * Escritor de bits sobre un array de bytes que crece según hace falta.
+ * Los valores se escriben empezando por el bit más significativo.
+ */
+class EscritorBits {
+    private byte[] bytes;
+    private int numBytes;
+    private int actual;     // Bits del byte en curso
+    private int ocupados;   // Bits usados del byte en curso
+
+    public EscritorBits(int capacidadeInicial) {
+        bytes = new byte[Math.max(16, capacidadeInicial)];
+    }
+
+    /**
+     * Escribe los bits de menor peso de un valor
+     * @param valor Valor a escribir
+     * @param bits Número de bits (1 a 64)
+     */
+    public void escribir(long valor, int bits) {
+        while (bits > 0) {
+            int n = Math.min(8 - ocupados, bits);
+            int trozo = (int) (valor >>> (bits - n)) & ((1 << n) - 1);
+            actual = (actual << n) | trozo;
+            ocupados += n;
+            bits -= n;
+            if (ocupados == 8) {
+                engadirByte(actual);
+                actual = 0;
+                ocupados = 0;
+            }
+        }
+    }
+
+    /**
+     * Devuelve los bytes escritos, rellenando con ceros el último byte
+     * @return Copia de los bytes
+     */
+    public byte[] aBytes() {
+        if (ocupados > 0) {
+            engadirByte(actual << (8 - ocupados));
+            actual = 0;
+            ocupados = 0;
+        }
+        return Arrays.copyOf(bytes, numBytes);
+    }
+
+    private void engadirByte(int b) {
+        if (numBytes == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        bytes[numBytes++] = (byte) b;
+    }
+}
@@ -7,80 +7,54 @@
  * Añadir lecturas.
  * Listarlas.
  * Mostrar máx, mín y media.
- * Guardar en rexistros_yyyyMMdd.dat.
+ * Guardar en rexistros_yyyyMMdd.dat (un segmento por día).
+ * Consultar lecturas entre fechas.
  * Usa:
  * Fechas.
  * Validaciones.
  * Fichero binario.
- * List<RexistroTemperatura>.
+ * SerieTemperaturas (almacén por columnas).
  */
 
 // Importaciones necesarias para el funcionamiento del programa
 import java.io.*;                 // Para operaciones de entrada/salida
         import java.time.LocalDateTime;   // Para manejar fecha y hora
+import java.time.Instant;         // Para convertir milisegundos en fecha
+import java.time.LocalDate;       // Para los días del arquivo
+import java.time.ZoneId;          // Zona horaria del sistema
 import java.time.format.DateTimeFormatter; // Para formatear fechas
-import java.util.ArrayList;       // Para usar List
-import java.util.List;            // Interfaz List
+import java.time.format.DateTimeParseException;
 import java.util.Scanner;         // Para leer entrada del usuario
-import java.util.stream.Collectors; // Para operaciones con streams
-
-/**
- * Clase que representa un registro de temperatura con su fecha/hora
- */
-class RexistroTemperatura implements Serializable {
-    // Versión de serialización para control de compatibilidad
-    private static final long serialVersionUID = 1L;
-
-    // Campos privados para encapsular los datos del registro
-    private double temperatura;      // Valor de la temperatura registrada
-    private LocalDateTime dataHora;  // Fecha y hora del registro
-
-    // Formato para mostrar fechas (dd/MM/yyyy HH:mm:ss)
-    private static final DateTimeFormatter FORMATO_DATA =
-            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-
-    /**
-     * Constructor de la clase RexistroTemperatura
-     * @param temperatura Valor de la temperatura
-     * @param dataHora Fecha y hora del registro
-     */
-    public RexistroTemperatura(double temperatura, LocalDateTime dataHora) {
-        this.temperatura = temperatura;
-        this.dataHora = dataHora;
-    }
-
-    // Métodos getters para acceder a los campos privados
-
-    public double getTemperatura() {
-        return temperatura;
-    }
-
-    public LocalDateTime getDataHora() {
-        return dataHora;
-    }
-
-    /**
-     * Representación en String del registro
-     * @return String formateada con los datos del registro
-     */
-    @Override
-    public String toString() {
-        return String.format("Temperatura: %.1f°C - Data/Hora: %s",
-                temperatura, dataHora.format(FORMATO_DATA));
-    }
-}
 
 /**
  * Clase principal que gestiona la estación meteorológica
  */
 public class EstacionMeteorologica {
-    // Lista para almacenar todos los registros de temperatura
-    private static List<RexistroTemperatura> rexistros = new ArrayList<>();
+    // Serie de lecturas por columnas; con -Destacion.capacidade=N solo se conservan las N últimas
+    private static final SerieTemperaturas rexistros =
+            new SerieTemperaturas(Integer.getInteger("estacion.capacidade", 0));
+    // Estadísticas de todas las lecturas (en modo anillo incluyen las ya sobrescritas)
+    private static final EstatisticasTemperatura estatisticas = new EstatisticasTemperatura();
+    // Agregados por resolución y ventanas de la última hora y las últimas 24 horas
+    private static final AgregadosTemperatura agregados = new AgregadosTemperatura();
+    // Formato de las etiquetas de las gráficas
+    private static final DateTimeFormatter FORMATO_CUBO = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+    // Zona horaria para convertir entre LocalDateTime e instantes
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+    // Arquivo de segmentos diarios en el directorio de trabajo
+    private static final ArquivoTemperaturas arquivo = new ArquivoTemperaturas(new File("."), ZONA);
+    // Formateador del listado, que reutiliza la fecha mientras no cambia el día
+    private static final FormatoLecturas FORMATO_LISTADO = new FormatoLecturas(ZONA);
+    // Filtro de anomalías de las lecturas manuales (configurable con -Destacion.filtro)
+    private static final FiltroAnomalias filtro = FiltroAnomalias.desdePropiedades();
+    // Un filtro por sensor para la inxestión, con la misma configuración
+    private static FiltroAnomalias[] filtrosSensores = new FiltroAnomalias[0];
+    // Número de lecturas (contadas desde el principio de la serie) ya guardadas en el arquivo
+    private static long gardadasAta;
+    // Formato de las fechas que introduce el usuario
+    private static final DateTimeFormatter FORMATO_DATA_USUARIO = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     // Scanner para leer entrada del usuario
     private static final Scanner scanner = new Scanner(System.in);
-    // Formato para el nombre del archivo (yyyyMMdd)
-    private static final DateTimeFormatter FORMATO_ARCHIVO =
-            DateTimeFormatter.ofPattern("yyyyMMdd");
 
     /**
      * Metodo principal que inicia la aplicación
@@ -96,7 +70,11 @@ public class EstacionMeteorologica {
             System.out.println("1. Engadir lectura de temperatura");
             System.out.println("2. Listar todas as lecturas");
             System.out.println("3. Mostrar estatísticas (máx, mín, media)");
-            System.out.println("4. Gardar e saír");
+            System.out.println("4. Mostrar última hora e últimas 24 horas");
+            System.out.println("5. Mostrar serie agregada (1 min, 10 min, 1 hora)");
+            System.out.println("6. Consultar lecturas entre datas");
+            System.out.println("7. Mostrar percentís (p50, p95, p99)");
+            System.out.println("8. Gardar e saír");
             System.out.print("Seleccione unha opción: ");
 
             // Manejo de la opción del usuario
@@ -114,6 +92,18 @@ public class EstacionMeteorologica {
                         mostrarEstatisticas();
                         break;
                     case 4:
+                        mostrarVentas();
+                        break;
+                    case 5:
+                        mostrarSerieAgregada();
+                        break;
+                    case 6:
+                        consultarEntreDatas();
+                        break;
+                    case 7:
+                        mostrarPercentis();
+                        break;
+                    case 8:
                         gardarRexistros();
                         System.out.println("Gardando datos e saíndo do sistema...");
                         scanner.close();
@@ -140,12 +130,14 @@ public class EstacionMeteorologica {
         try {
             double temperatura = Double.parseDouble(scanner.nextLine());
 
-            // Crear registro con temperatura y fecha/hora actual
-            RexistroTemperatura rexistro = new RexistroTemperatura(
-                    temperatura, LocalDateTime.now());
-
-            // Añadir a la lista
-            rexistros.add(rexistro);
+            // Añadir a la serie con la hora actual, sin crear objetos por lectura
+            if (!rexistrarFiltrada(filtro, System.currentTimeMillis(), (float) temperatura)) {
+                System.out.println("Lectura rexeitada: afástase demasiado das anteriores.");
+                return;
+            }
+            if (filtro.isUltimaAnomala()) {
+                System.out.println("Aviso: lectura marcada como anómala.");
+            }
             System.out.println("Lectura engadida correctamente.");
         } catch (NumberFormatException e) {
             System.out.println("Error: A temperatura debe ser un número válido.");
@@ -155,94 +147,279 @@ public class EstacionMeteorologica {
     /**
      * Lista todas las lecturas registradas
      */
-    private static void listarLecturas() {
+    private static synchronized void listarLecturas() {
         System.out.println("\n--- LISTADO DE LECTURAS ---");
 
-        if (rexistros.isEmpty()) {
+        if (rexistros.estaBaleira()) {
             System.out.println("Non hay lecturas rexistradas.");
             return;
         }
 
-        // Mostrar todas las lecturas numeradas
-        for (int i = 0; i < rexistros.size(); i++) {
-            System.out.println((i + 1) + ". " + rexistros.get(i));
+        // Mostrar todas las lecturas numeradas, leídas directamente de las columnas
+        // y escritas por bloques de 64 KB sin crear un String por línea
+        try {
+            Writer saida = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            FORMATO_LISTADO.escribirListado(rexistros, saida);
+            saida.flush();
+        } catch (IOException e) {
+            System.out.println("Error ao listar: " + e.getMessage());
         }
     }
 
     /**
      * Muestra estadísticas de las temperaturas (máx, mín, media)
      */
-    private static void mostrarEstatisticas() {
+    private static synchronized void mostrarEstatisticas() {
         System.out.println("\n--- ESTATÍSTICAS ---");
 
-        if (rexistros.isEmpty()) {
+        if (estatisticas.getConta() == 0) {
             System.out.println("Non hay lecturas para calcular estatísticas.");
             return;
         }
 
-        // Calcular estadísticas usando streams
-        double max = rexistros.stream()
-                .mapToDouble(RexistroTemperatura::getTemperatura)
-                .max()
-                .getAsDouble();
+        // Mostrar resultados formateados (mantenidos en cada lectura, sin recorrer la serie)
+        System.out.printf("Temperatura máxima: %.1f°C\n", estatisticas.getMaxima());
+        System.out.printf("Temperatura mínima: %.1f°C\n", estatisticas.getMinima());
+        System.out.printf("Temperatura media: %.1f°C\n", estatisticas.getMedia());
+        System.out.printf("Desviación típica: %.2f°C\n", estatisticas.getDesviacionTipica());
+        if (filtro.getModo() != FiltroAnomalias.Modo.DESACTIVADO) {
+            long anomalas = filtro.getAnomalas();
+            for (FiltroAnomalias f : filtrosSensores) {
+                anomalas += f.getAnomalas();
+            }
+            System.out.printf("Lecturas anómalas (%s): %d\n",
+                    filtro.getModo() == FiltroAnomalias.Modo.MARCAR ? "marcadas" : "rexeitadas", anomalas);
+        }
+    }
 
-        double min = rexistros.stream()
-                .mapToDouble(RexistroTemperatura::getTemperatura)
-                .min()
-                .getAsDouble();
+    /**
+     * Muestra máxima, mínima y media de la última hora y de las últimas 24 horas
+     */
+    private static synchronized void mostrarVentas() {
+        System.out.println("\n--- ÚLTIMA HORA E ÚLTIMAS 24 HORAS ---");
+        long ahora = System.currentTimeMillis();
+        mostrarVenta("Última hora", agregados.getUltimaHora(), ahora);
+        mostrarVenta("Últimas 24 horas", agregados.getUltimoDia(), ahora);
+    }
 
-        double media = rexistros.stream()
-                .mapToDouble(RexistroTemperatura::getTemperatura)
-                .average()
-                .getAsDouble();
+    private static void mostrarVenta(String titulo, VentaDeslizante venta, long ahora) {
+        long conta = agregados.getConta(venta, ahora);
+        if (conta == 0) {
+            System.out.println(titulo + ": sen lecturas.");
+            return;
+        }
+        System.out.printf("%s (%d lecturas): máx %.1f°C, mín %.1f°C, media %.1f°C\n", titulo, conta,
+                agregados.getMaxima(venta, ahora), agregados.getMinima(venta, ahora), agregados.getMedia(venta, ahora));
+    }
 
-        // Mostrar resultados formateados
-        System.out.printf("Temperatura máxima: %.1f°C\n", max);
-        System.out.printf("Temperatura mínima: %.1f°C\n", min);
-        System.out.printf("Temperatura media: %.1f°C\n", media);
+    /**
+     * Muestra la serie de una resolución (media, mínima y máxima de cada intervalo con lecturas)
+     */
+    private static void mostrarSerieAgregada() {
+        System.out.println("\n--- SERIE AGREGADA ---");
+        System.out.print("Resolución en minutos (1, 10 ou 60): ");
+        ResolucionTemperatura resolucion;
+        try {
+            resolucion = agregados.getResolucion(Integer.parseInt(scanner.nextLine()));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: A resolución debe ser 1, 10 ou 60.");
+            return;
+        }
+        imprimirSerie(resolucion);
+    }
+
+    private static synchronized void imprimirSerie(ResolucionTemperatura resolucion) {
+        long ultimo = System.currentTimeMillis() / resolucion.getDuracion();
+        boolean algun = false;
+        for (long cubo = ultimo - resolucion.getNumCubos() + 1; cubo <= ultimo; cubo++) {
+            if (resolucion.getConta(cubo) == 0) {
+                continue;
+            }
+            algun = true;
+            LocalDateTime inicio = LocalDateTime.ofInstant(Instant.ofEpochMilli(cubo * resolucion.getDuracion()), ZONA);
+            System.out.printf("%s  media %.1f°C  mín %.1f°C  máx %.1f°C  (%d)\n", inicio.format(FORMATO_CUBO),
+                    resolucion.getMedia(cubo), resolucion.getMinima(cubo), resolucion.getMaxima(cubo),
+                    resolucion.getConta(cubo));
+        }
+        if (!algun) {
+            System.out.println("Non hay lecturas nese período.");
+        }
     }
 
     /**
-     * Guarda los registros en un archivo binario con nombre basado en la fecha actual
+     * Muestra p50, p95 y p99 de las últimas horas indicadas uniendo los
+     * resúmenes por hora, sin ordenar las lecturas
      */
-    private static void gardarRexistros() {
-        // Generar nombre de archivo con la fecha actual (yyyyMMdd)
-        String nomeArquivo = "rexistros_" + LocalDateTime.now().format(FORMATO_ARCHIVO) + ".dat";
-
-        // Try-with-resources para garantizar que el ObjectOutputStream se cierre
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(nomeArquivo))) {
-            oos.writeObject(rexistros);
-            System.out.println("Rexistros gardados en " + nomeArquivo);
+    private static void mostrarPercentis() {
+        System.out.println("\n--- PERCENTÍS ---");
+        System.out.print("Últimas horas (1-720): ");
+        int horas;
+        try {
+            horas = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            horas = 0;
+        }
+        if (horas < 1 || horas > 720) {
+            System.out.println("Error: O número de horas debe estar entre 1 e 720.");
+            return;
+        }
+        imprimirPercentis(horas);
+    }
+
+    private static synchronized void imprimirPercentis(int horas) {
+        long ahora = System.currentTimeMillis();
+        ResumoPercentis resumo = agregados.getPercentis(ahora - horas * 60 * AgregadosTemperatura.MS_MINUTO, ahora + 1);
+        if (resumo.getConta() == 0) {
+            System.out.println("Non hay lecturas nese período.");
+            return;
+        }
+        System.out.printf("p50: %.1f°C  p95: %.1f°C  p99: %.1f°C  (%d lecturas)\n",
+                resumo.cuantil(0.50), resumo.cuantil(0.95), resumo.cuantil(0.99), resumo.getConta());
+    }
+
+    /**
+     * Muestra las estadísticas de las lecturas guardadas entre dos fechas.
+     * Solo se abren los segmentos de los días del rango.
+     */
+    private static void consultarEntreDatas() {
+        System.out.println("\n--- CONSULTAR ENTRE DATAS ---");
+        LocalDate inicio;
+        LocalDate fin;
+        try {
+            System.out.print("Data inicial (dd/MM/yyyy): ");
+            inicio = LocalDate.parse(scanner.nextLine().trim(), FORMATO_DATA_USUARIO);
+            System.out.print("Data final (dd/MM/yyyy): ");
+            fin = LocalDate.parse(scanner.nextLine().trim(), FORMATO_DATA_USUARIO);
+        } catch (DateTimeParseException e) {
+            System.out.println("Error: A data debe ter o formato dd/MM/yyyy.");
+            return;
+        }
+        long desde = inicio.atStartOfDay(ZONA).toInstant().toEpochMilli();
+        long hasta = fin.plusDays(1).atStartOfDay(ZONA).toInstant().toEpochMilli();
+        EstatisticasTemperatura rango = new EstatisticasTemperatura();
+        // Sincronizado con gardarRexistros, que puede estar ampliando los segmentos
+        synchronized (EstacionMeteorologica.class) {
+            consultarArquivo(desde, hasta, rango);
+        }
+    }
+
+    private static void consultarArquivo(long desde, long hasta, EstatisticasTemperatura rango) {
+        try {
+            int segmentos = arquivo.consultar(desde, hasta, (instante, temperatura) -> rango.engadir(temperatura));
+            if (rango.getConta() == 0) {
+                System.out.println("Non hay lecturas gardadas nese período.");
+                return;
+            }
+            System.out.printf("Lecturas: %d (en %d arquivos)\n", rango.getConta(), segmentos);
+            System.out.printf("Temperatura máxima: %.1f°C\n", rango.getMaxima());
+            System.out.printf("Temperatura mínima: %.1f°C\n", rango.getMinima());
+            System.out.printf("Temperatura media: %.1f°C\n", rango.getMedia());
+        } catch (IOException e) {
+            System.err.println("Error ao consultar o arquivo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Añade al arquivo las lecturas que aún no se han guardado, cada una en
+     * el segmento de su día, sin reescribir lo que ya estaba guardado
+     */
+    private static synchronized void gardarRexistros() {
+        // Primera lectura pendiente que sigue en la serie (el anillo puede haber sobrescrito otras)
+        long primeira = Math.max(gardadasAta, rexistros.getEngadidas() - rexistros.tamano());
+        int pendentes = (int) (rexistros.getEngadidas() - primeira);
+        if (pendentes == 0) {
+            System.out.println("Non hay lecturas novas que gardar.");
+            return;
+        }
+        long[] instantes = new long[pendentes];
+        float[] temperaturas = new float[pendentes];
+        int base = rexistros.tamano() - pendentes;
+        for (int i = 0; i < pendentes; i++) {
+            instantes[i] = rexistros.getInstante(base + i);
+            temperaturas[i] = rexistros.getTemperatura(base + i);
+        }
+        try {
+            arquivo.engadir(instantes, temperaturas, pendentes);
+            gardadasAta = rexistros.getEngadidas();
+            System.out.println(pendentes + " lecturas novas gardadas no arquivo.");
         } catch (IOException e) {
             System.err.println("Error ao gardar os rexistros: " + e.getMessage());
         }
     }
 
     /**
-     * Carga los registros desde el archivo binario del día actual
+     * Carga las lecturas del segmento del día actual (convirtiéndolo si es
+     * de la versión antigua)
      */
-    @SuppressWarnings("unchecked")
-    private static void cargarRexistros() {
-        // Generar nombre de archivo con la fecha actual (yyyyMMdd)
-        String nomeArquivo = "rexistros_" + LocalDateTime.now().format(FORMATO_ARCHIVO) + ".dat";
-        File arquivo = new File(nomeArquivo);
+    private static synchronized void cargarRexistros() {
+        File segmento = arquivo.segmento(LocalDate.now(ZONA));
 
         // Verificar si el archivo existe antes de intentar leerlo
-        if (!arquivo.exists()) {
+        if (!segmento.exists()) {
             System.out.println("Non se encontró arquivo de rexistros. Comezando con lista baleira.");
             return;
         }
 
-        // Try-with-resources para garantizar que el ObjectInputStream se cierre
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(nomeArquivo))) {
-            rexistros = (List<RexistroTemperatura>) ois.readObject();
-            System.out.println("Rexistros cargados desde " + nomeArquivo);
+        try {
+            rexistros.baleirar();
+            estatisticas.reiniciar();
+            arquivo.lerDia(LocalDate.now(ZONA), EstacionMeteorologica::rexistrar);
+            gardadasAta = rexistros.getEngadidas();
+            System.out.println("Rexistros cargados desde " + segmento.getName());
         } catch (IOException e) {
             System.err.println("Error ao cargar os rexistros: " + e.getMessage());
-        } catch (ClassNotFoundException e) {
-            System.err.println("Error: Clase non encontrada ao cargar rexistros");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Crea una inxestión para varios sensores cuyas lecturas entran, por
+     * lotes, en la serie, estadísticas y agregados de la estación, pasando
+     * antes por un filtro de anomalías propio de cada sensor.
+     * Los métodos de la estación que leen esos datos están sincronizados
+     * con la entrada de lotes.
+     * @param numSensores Sensores (identificados de 0 a numSensores-1)
+     * @return Inxestión en marcha; hay que llamar a deter() al terminar
+     */
+    static synchronized InxestionSensores iniciarInxestion(int numSensores) {
+        filtrosSensores = new FiltroAnomalias[numSensores];
+        for (int i = 0; i < numSensores; i++) {
+            filtrosSensores[i] = filtro.copiar();
+        }
+        return new InxestionSensores(numSensores, 1 << 14, 4096, EstacionMeteorologica::inxerirLote);
+    }
+
+    // Destino de los lotes: un solo bloqueo por lote
+    private static synchronized void inxerirLote(int sensor, long[] instantes, float[] temperaturas, int n) {
+        FiltroAnomalias filtroSensor = filtrosSensores[sensor];
+        for (int i = 0; i < n; i++) {
+            if (filtroSensor.admitir(temperaturas[i])) {
+                rexistrar(instantes[i], temperaturas[i]);
+            }
+        }
+    }
+
+    /**
+     * Pasa una lectura nueva por el filtro y, si la admite, la registra.
+     * Las lecturas cargadas del arquivo no pasan por aquí: ya se filtraron al llegar.
+     * @return false si el filtro la rechaza
+     */
+    private static synchronized boolean rexistrarFiltrada(FiltroAnomalias filtroLectura, long instante, float temperatura) {
+        if (!filtroLectura.admitir(temperatura)) {
+            return false;
+        }
+        rexistrar(instante, temperatura);
+        return true;
+    }
+
+    /**
+     * Guarda una lectura en la serie y la contabiliza en las estadísticas
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     * @param temperatura Temperatura en °C
+     */
+    private static synchronized void rexistrar(long instante, float temperatura) {
+        rexistros.engadir(instante, temperatura);
+        estatisticas.engadir(temperatura);
+        agregados.engadir(instante, temperatura);
+    }
+
+}
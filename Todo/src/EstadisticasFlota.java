@@ -0,0 +1,123 @@
+import java.util.*;
+
+/**
+ * Agregados de la flota que se actualizan con cada operación del parking,
+ * de modo que consultar las estadísticas no obliga a recorrer los vehículos.
+ * Cada actualización es O(1); las velocidades se guardan en un histograma de
+ * 201 casillas (0-200 km/h), así que mínimo y máximo se leen con un recorrido
+ * acotado que no depende del tamaño de la flota.
+ */
+public class EstadisticasFlota {
+    private static final int VELOCIDAD_MAXIMA = 200;
+
+    private long total;                       // Vehículos contabilizados
+    private long sumaVelocidades;             // Suma de velocidades para la media
+    private final long[] porVelocidad = new long[VELOCIDAD_MAXIMA + 1]; // Vehículos en cada velocidad
+    private final Map<String, Long> porMarca = new HashMap<>();        // Marca (en minúsculas) → vehículos
+    private final TreeMap<Integer, Long> porAnio = new TreeMap<>();     // Año de fabricación → vehículos
+
+    /**
+     * Contabiliza un vehículo nuevo.
+     * @param v Vehículo añadido
+     */
+    public void anadir(Vehiculo v) {
+        total++;
+        sumaVelocidades += v.getVelocidadActual();
+        porVelocidad[v.getVelocidadActual()]++;
+        porMarca.merge(clave(v.getMarca()), 1L, Long::sum);
+        porAnio.merge(v.getAñoFabricacion(), 1L, Long::sum);
+    }
+
+    /**
+     * Descuenta un vehículo que sale de la flota.
+     * @param v Vehículo eliminado (con los datos que tenía al contabilizarse)
+     */
+    public void quitar(Vehiculo v) {
+        total--;
+        sumaVelocidades -= v.getVelocidadActual();
+        porVelocidad[v.getVelocidadActual()]--;
+        porMarca.computeIfPresent(clave(v.getMarca()), (k, n) -> n > 1 ? n - 1 : null);
+        porAnio.computeIfPresent(v.getAñoFabricacion(), (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    /**
+     * Refleja el cambio de velocidad de un vehículo ya contabilizado.
+     * @param anterior Velocidad antes del cambio
+     * @param nueva Velocidad después del cambio
+     */
+    public void cambiarVelocidad(int anterior, int nueva) {
+        sumaVelocidades += nueva - anterior;
+        porVelocidad[anterior]--;
+        porVelocidad[nueva]++;
+    }
+
+    /**
+     * Deja los agregados a cero.
+     */
+    public void reiniciar() {
+        total = 0;
+        sumaVelocidades = 0;
+        Arrays.fill(porVelocidad, 0);
+        porMarca.clear();
+        porAnio.clear();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Obtiene la velocidad media de la flota.
+     * @return Media en km/h (0 si no hay vehículos)
+     */
+    public double getVelocidadMedia() {
+        return total == 0 ? 0 : (double) sumaVelocidades / total;
+    }
+
+    /**
+     * Obtiene la velocidad mínima de la flota.
+     * @return Velocidad mínima en km/h, o -1 si no hay vehículos
+     */
+    public int getVelocidadMinima() {
+        for (int v = 0; v <= VELOCIDAD_MAXIMA; v++) {
+            if (porVelocidad[v] > 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Obtiene la velocidad máxima de la flota.
+     * @return Velocidad máxima en km/h, o -1 si no hay vehículos
+     */
+    public int getVelocidadMaxima() {
+        for (int v = VELOCIDAD_MAXIMA; v >= 0; v--) {
+            if (porVelocidad[v] > 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Obtiene el número de vehículos de cada marca.
+     * @return Mapa de solo lectura marca (en minúsculas) → vehículos
+     */
+    public Map<String, Long> getPorMarca() {
+        return Collections.unmodifiableMap(porMarca);
+    }
+
+    /**
+     * Obtiene el histograma de antigüedad por año de fabricación.
+     * @return Mapa de solo lectura año → vehículos, ordenado por año
+     */
+    public SortedMap<Integer, Long> getPorAnio() {
+        return Collections.unmodifiableSortedMap(porAnio);
+    }
+
+    // Misma normalización de marca que el índice de GestorParking
+    private static String clave(String marca) {
+        return marca == null ? "" : marca.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Estadísticas de temperatura que se actualizan con cada lectura, de modo
+ * que consultarlas es O(1) sin importar cuántas lecturas haya.
+ * La suma usa compensación de Kahan para que la media no acumule error de
+ * redondeo con millones de lecturas. Para la varianza se acumulan, también
+ * compensadas, las diferencias con la primera lectura y sus cuadrados (con el
+ * error de cada cuadrado, obtenido con fma); restar los cuadrados de la
+ * primera lectura evita la cancelación catastrófica de la fórmula de una
+ * pasada, y el resultado coincide con el cálculo en dos pasadas hasta el
+ * último bit o casi (ver ProbaEstatisticasTemperatura).
+ */
+class EstatisticasTemperatura {
+    private long conta;                           // Lecturas contabilizadas
+    private double suma;                          // Suma de temperaturas (Kahan)
+    private double compensacion;                  // Error acumulado de la suma
+    private double referencia;                    // Primera lectura: se resta a todas para la varianza
+    private double sumaDif;                       // Suma de diferencias con la referencia
+    private double compensacionDif;               // Error acumulado de sumaDif
+    private double sumaCuadrados;                 // Suma de los cuadrados de las diferencias
+    private double compensacionCuadrados;         // Error acumulado de sumaCuadrados y de cada cuadrado
+    private double minima = Double.POSITIVE_INFINITY;
+    private double maxima = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Contabiliza una lectura
+     * @param temperatura Temperatura en °C
+     */
+    public void engadir(double temperatura) {
+        conta++;
+        // Suma de Kahan
+        double y = temperatura - compensacion;
+        double t = suma + y;
+        compensacion = (t - suma) - y;
+        suma = t;
+        // Diferencia con la primera lectura y su cuadrado, con suma de Neumaier
+        if (conta == 1) {
+            referencia = temperatura;
+        }
+        double d = temperatura - referencia;
+        double s = sumaDif + d;
+        compensacionDif += Math.abs(sumaDif) >= Math.abs(d) ? (sumaDif - s) + d : (d - s) + sumaDif;
+        sumaDif = s;
+        double cuadrado = d * d;
+        double errorCuadrado = Math.fma(d, d, -cuadrado);
+        s = sumaCuadrados + cuadrado;
+        compensacionCuadrados += (sumaCuadrados >= cuadrado ? (sumaCuadrados - s) + cuadrado
+                : (cuadrado - s) + sumaCuadrados) + errorCuadrado;
+        sumaCuadrados = s;
+        minima = Math.min(minima, temperatura);
+        maxima = Math.max(maxima, temperatura);
+    }
+
+    /**
+     * Deja las estadísticas a cero
+     */
+    public void reiniciar() {
+        conta = 0;
+        suma = 0;
+        compensacion = 0;
+        referencia = 0;
+        sumaDif = 0;
+        compensacionDif = 0;
+        sumaCuadrados = 0;
+        compensacionCuadrados = 0;
+        minima = Double.POSITIVE_INFINITY;
+        maxima = Double.NEGATIVE_INFINITY;
+    }
+
+    public long getConta() {
+        return conta;
+    }
+
+    public double getSuma() {
+        return suma;
+    }
+
+    public double getMedia() {
+        return conta == 0 ? Double.NaN : suma / conta;
+    }
+
+    /**
+     * Varianza de la población
+     * @return Varianza, o NaN si no hay lecturas
+     */
+    public double getVarianza() {
+        if (conta == 0) {
+            return Double.NaN;
+        }
+        // n·varianza = Σd² - (Σd)²/n. Σd y Σd² son sumaX + compensacionX; el
+        // producto y la división se descomponen con fma para no perder los bits
+        // que se cancelan en la resta
+        double n = conta;
+        double cociente = sumaDif / n;
+        double resto = Math.fma(-cociente, n, sumaDif);         // sumaDif = cociente·n + resto
+        double producto = sumaDif * cociente;
+        double errorProducto = Math.fma(sumaDif, cociente, -producto);
+        double correccion = compensacionCuadrados - errorProducto
+                - (sumaDif * resto + 2 * sumaDif * compensacionDif) / n;
+        return Math.max(0, ((sumaCuadrados - producto) + correccion) / n);
+    }
+
+    public double getDesviacionTipica() {
+        return Math.sqrt(getVarianza());
+    }
+
+    public double getMinima() {
+        return minima;
+    }
+
+    public double getMaxima() {
+        return maxima;
+    }
+}
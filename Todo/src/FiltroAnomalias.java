@@ -0,0 +1,130 @@
+import java.util.Locale;
+
+/**
+ * Filtro de lecturas anómalas en línea, O(1) por lectura: mantiene una
+ * media y una varianza con media móvil exponencial (EWMA) y considera
+ * anómala una lectura que se aleja de la media más de "limiar"
+ * desviaciones típicas (puntuación z). Las lecturas no finitas siempre
+ * son anómalas.
+ *
+ * Una lectura anómala entra en la referencia recortada al límite: un pico
+ * aislado apenas la mueve, pero un cambio sostenido (p. ej. un frente)
+ * la va desplazando y acaba aceptándose. Las primeras lecturas solo
+ * sirven para calentar la referencia y no se juzgan.
+ */
+class FiltroAnomalias {
+    /**
+     * Qué se hace con una lectura anómala
+     */
+    enum Modo {
+        DESACTIVADO,    // No se comprueba nada
+        MARCAR,         // Se guarda, pero se cuenta y se avisa
+        REXEITAR        // No llega ni a la serie ni a los agregados
+    }
+
+    // Desviación mínima (°C) para que una serie casi plana no rechace cualquier cambio
+    private static final double DESVIACION_MINIMA = 0.1;
+
+    private final Modo modo;
+    private final double alfa;      // Peso de cada lectura nueva en la media
+    private final double limiar;    // Desviaciones típicas a partir de las que es anómala
+    private final int quecemento;   // Lecturas que no se juzgan al empezar
+    private long vistas;
+    private double media;
+    private double varianza;
+    private long anomalas;
+    private boolean ultimaAnomala;
+
+    /**
+     * Constructor del filtro
+     * @param modo Qué hacer con las lecturas anómalas
+     * @param alfa Peso de cada lectura en la media (0.05 ≈ últimas 20 lecturas)
+     * @param limiar Puntuación z a partir de la que una lectura es anómala
+     * @param quecemento Lecturas iniciales que no se juzgan
+     */
+    public FiltroAnomalias(Modo modo, double alfa, double limiar, int quecemento) {
+        if (alfa <= 0 || alfa >= 1 || limiar <= 0) {
+            throw new IllegalArgumentException("Parámetros do filtro non válidos");
+        }
+        this.modo = modo;
+        this.alfa = alfa;
+        this.limiar = limiar;
+        this.quecemento = quecemento;
+    }
+
+    /**
+     * Crea el filtro de la estación a partir de las propiedades
+     * -Destacion.filtro=desactivado|marcar|rexeitar, -Destacion.filtro.limiar
+     * (4 por defecto) y -Destacion.filtro.alfa (0.05 por defecto).
+     * Si algún valor no es válido se avisa y el filtro queda desactivado.
+     * @return Filtro configurado
+     */
+    public static FiltroAnomalias desdePropiedades() {
+        try {
+            Modo modo = Modo.valueOf(System.getProperty("estacion.filtro", "desactivado").trim().toUpperCase(Locale.ROOT));
+            double limiar = Double.parseDouble(System.getProperty("estacion.filtro.limiar", "4"));
+            double alfa = Double.parseDouble(System.getProperty("estacion.filtro.alfa", "0.05"));
+            return new FiltroAnomalias(modo, alfa, limiar, 20);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Aviso: configuración do filtro non válida, queda desactivado.");
+            return new FiltroAnomalias(Modo.DESACTIVADO, 0.05, 4, 20);
+        }
+    }
+
+    /**
+     * Filtro nuevo con la misma configuración y sin historia (p. ej. uno por sensor)
+     * @return Copia de la configuración
+     */
+    public FiltroAnomalias copiar() {
+        return new FiltroAnomalias(modo, alfa, limiar, quecemento);
+    }
+
+    /**
+     * Juzga una lectura y actualiza la referencia
+     * @param temperatura Temperatura en °C
+     * @return false si la lectura debe descartarse (solo en modo REXEITAR)
+     */
+    public boolean admitir(float temperatura) {
+        if (modo == Modo.DESACTIVADO) {
+            return true;
+        }
+        ultimaAnomala = avaliar(temperatura);
+        if (ultimaAnomala) {
+            anomalas++;
+        }
+        return !ultimaAnomala || modo != Modo.REXEITAR;
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    public long getAnomalas() {
+        return anomalas;
+    }
+
+    public boolean isUltimaAnomala() {
+        return ultimaAnomala;
+    }
+
+    private boolean avaliar(double valor) {
+        if (!Double.isFinite(valor)) {
+            return true;
+        }
+        if (vistas++ == 0) {
+            media = valor;
+            return false;
+        }
+        double desviacion = Math.max(Math.sqrt(varianza), DESVIACION_MINIMA);
+        boolean anomala = vistas > quecemento && Math.abs(valor - media) > limiar * desviacion;
+        if (anomala) {
+            valor = media + Math.copySign(limiar * desviacion, valor - media);
+        }
+        // Media y varianza exponenciales actualizadas juntas (forma incremental de West)
+        double diferencia = valor - media;
+        double incremento = alfa * diferencia;
+        media += incremento;
+        varianza = (1 - alfa) * (varianza + diferencia * incremento);
+        return anomala;
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.*;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Locale;
+
+/**
+ * Formateador de lecturas sin DateTimeFormatter ni String.format: escribe
+ * "Temperatura: 21.5°C - Data/Hora: dd/MM/yyyy HH:mm:ss" en un StringBuilder.
+ * La fecha "dd/MM/yyyy " se calcula una vez y se reutiliza mientras los
+ * instantes caigan en el mismo tramo (el mismo día y sin cambio de hora),
+ * y la hora sale de sumar el desfase de la zona a los milisegundos.
+ * El resultado es el mismo que el de String.format con la configuración
+ * regional por defecto. No es seguro entre hilos.
+ */
+class FormatoLecturas {
+    private static final long MS_DIA = 86_400_000L;
+    // Rango en el que el prefijo cabe en "dd/MM/yyyy " (años 1 a 9999, con margen de zona)
+    private static final long MIN_CACHE = -62_135_596_800_000L + 2 * MS_DIA;
+    private static final long MAX_CACHE = 253_402_300_800_000L - 2 * MS_DIA;
+
+    // Formato para mostrar fechas (dd/MM/yyyy HH:mm:ss)
+    private static final DateTimeFormatter FORMATO_DATA =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private final ZoneId zona;
+    private final char separadorDecimal;
+    private final char[] prefixoDia = new char[11];  // "dd/MM/yyyy "
+    private long inicioTramo = Long.MAX_VALUE;        // Tramo [inicio, fin) en el que vale prefixoDia
+    private long finTramo = Long.MIN_VALUE;
+    private long desfase;                             // Milisegundos a sumar para la hora local
+    private final StringBuilder linea = new StringBuilder(64);
+    private char[] caracteres = new char[64];
+
+    public FormatoLecturas(ZoneId zona) {
+        this.zona = zona;
+        separadorDecimal = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT))
+                .getDecimalSeparator();
+    }
+
+    /**
+     * Añade el texto de una lectura, como RexistroTemperatura.toString()
+     * @param texto Destino
+     * @param temperatura Temperatura en °C
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     */
+    public void engadirRexistro(StringBuilder texto, double temperatura, long instante) {
+        texto.append("Temperatura: ");
+        engadirTemperatura(texto, temperatura);
+        texto.append("°C - Data/Hora: ");
+        engadirDataHora(texto, instante);
+    }
+
+    /**
+     * Escribe el listado numerado de una serie ("1. Temperatura: ...") sin
+     * crear objetos por línea
+     * @param serie Lecturas a listar
+     * @param saida Destino (conviene que tenga buffer)
+     * @throws IOException Si falla la escritura
+     */
+    public void escribirListado(SerieTemperaturas serie, Writer saida) throws IOException {
+        String salto = System.lineSeparator();
+        for (int i = 0; i < serie.tamano(); i++) {
+            linea.setLength(0);
+            linea.append(i + 1).append(". ");
+            engadirRexistro(linea, serie.getTemperatura(i), serie.getInstante(i));
+            linea.append(salto);
+            if (linea.length() > caracteres.length) {
+                caracteres = new char[linea.length() * 2];
+            }
+            linea.getChars(0, linea.length(), caracteres, 0);
+            saida.write(caracteres, 0, linea.length());
+        }
+    }
+
+    /**
+     * Añade la temperatura con un decimal, redondeando como String.format("%.1f")
+     */
+    public void engadirTemperatura(StringBuilder texto, double temperatura) {
+        double decimas = Math.abs(temperatura) * 10;
+        double fraccion = decimas - Math.floor(decimas);
+        // Casi en la mitad exacta el producto puede redondear distinto que el valor decimal real
+        if (!(decimas < 1e15) || Math.abs(fraccion - 0.5) < 1e-6) {
+            texto.append(String.format("%.1f", temperatura));
+            return;
+        }
+        long redondeado = Math.round(decimas);
+        if (Double.doubleToRawLongBits(temperatura) < 0) {
+            texto.append('-');
+        }
+        texto.append(redondeado / 10).append(separadorDecimal).append((char) ('0' + redondeado % 10));
+    }
+
+    /**
+     * Añade la fecha y hora local con el formato dd/MM/yyyy HH:mm:ss
+     */
+    public void engadirDataHora(StringBuilder texto, long instante) {
+        if (instante < MIN_CACHE || instante >= MAX_CACHE) {
+            // Años que no ocupan cuatro cifras: como antes
+            texto.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(instante), zona).format(FORMATO_DATA));
+            return;
+        }
+        if (instante < inicioTramo || instante >= finTramo) {
+            calcularTramo(instante);
+        }
+        texto.append(prefixoDia);
+        int segundos = (int) (Math.floorMod(instante + desfase, MS_DIA) / 1000);
+        engadirDosCifras(texto, segundos / 3600);
+        texto.append(':');
+        engadirDosCifras(texto, segundos / 60 % 60);
+        texto.append(':');
+        engadirDosCifras(texto, segundos % 60);
+    }
+
+    // Prepara el prefijo del día y el tramo en el que vale (hasta medianoche o el próximo cambio de hora)
+    private void calcularTramo(long instante) {
+        Instant momento = Instant.ofEpochMilli(instante);
+        ZoneRules reglas = zona.getRules();
+        LocalDate dia = LocalDate.ofInstant(momento, zona);
+        desfase = reglas.getOffset(momento).getTotalSeconds() * 1000L;
+        inicioTramo = dia.atStartOfDay(zona).toInstant().toEpochMilli();
+        finTramo = dia.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli();
+        ZoneOffsetTransition anterior = reglas.previousTransition(momento.plusMillis(1));
+        if (anterior != null) {
+            inicioTramo = Math.max(inicioTramo, anterior.getInstant().toEpochMilli());
+        }
+        ZoneOffsetTransition seguinte = reglas.nextTransition(momento);
+        if (seguinte != null) {
+            finTramo = Math.min(finTramo, seguinte.getInstant().toEpochMilli());
+        }
+        String data = String.format("%02d/%02d/%04d ", dia.getDayOfMonth(), dia.getMonthValue(), dia.getYear());
+        data.getChars(0, prefixoDia.length, prefixoDia, 0);
+    }
+
+    private static void engadirDosCifras(StringBuilder texto, int valor) {
+        texto.append((char) ('0' + valor / 10)).append((char) ('0' + valor % 10));
+    }
+}
@@ -1,20 +1,117 @@
 import java.io.*;
-import java.util.HashMap;
-import java.util.Map; /**
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
  * Clase que gestiona las operaciones del parking.
  */
 public class GestorParking {
     // Mapa que almacena los vehículos (clave: matrícula)
-    private Map<String, Vehiculo> vehiculos;
+    private final Map<String, Vehiculo> vehiculos;
     // Nombre del archivo para persistencia
     private final String FICHERO_DATOS = "vehiculos.dat";
+    // Fichero del almacén proyectado en memoria (solo con Almacen.MAPEADO)
+    private final String FICHERO_MAPEADO = "vehiculos.map";
+    // Almacén mapeado, o null si los vehículos están en el heap
+    private final AlmacenMapeado mapeado;
+    // Mapa de carga diferida, o null si los vehículos se cargan enteros al arrancar
+    private final MapaDiferido diferido;
+    // Diario con las operaciones posteriores a la última instantánea
+    private final String FICHERO_DIARIO = "vehiculos.log";
+    private final DiarioParking diario = new DiarioParking(FICHERO_DIARIO);
+    // Operaciones acumuladas en el diario antes de compactarlo en una instantánea
+    private static final int OPERACIONES_POR_INSTANTANEA = 10_000;
+    // Índices secundarios: marca (en minúsculas) → matrículas, y año → matrículas
+    private final Map<String, Set<String>> indiceMarca = new HashMap<>();
+    private final TreeMap<Integer, Set<String>> indiceAnio = new TreeMap<>();
+    // Agregados de la flota que se mantienen al día con cada operación
+    private final EstadisticasFlota estadisticas = new EstadisticasFlota();
+    // Serie de ocupación alimentada por las entradas y salidas de vehículos
+    private final OcupacionParking ocupacion = new OcupacionParking();
+    // false mientras los índices y estadísticas no se han construido (carga diferida)
+    private boolean indicesAlDia;
+
+    // Excepciones compartidas sin traza: el mensaje es fijo y se lanzan en cada duplicado o fallo
+    // (también las usa GestorParkingConcurrente)
+    static final Vehiculo.VehiculoYaExisteException YA_EXISTE =
+            new Vehiculo.VehiculoYaExisteException("⚠️ Ya existe un vehículo con esa matrícula.", false);
+    static final Vehiculo.VehiculoNoEncontradoException NO_ENCONTRADO =
+            new Vehiculo.VehiculoNoEncontradoException("❌ Vehículo no encontrado.", false);
+    static final Vehiculo.VehiculoNoEncontradoException NO_ENCONTRADO_ELIMINAR =
+            new Vehiculo.VehiculoNoEncontradoException("❌ No se puede eliminar: vehículo no encontrado.", false);
+
+    /**
+     * Tipos de almacén de vehículos que puede usar el gestor.
+     */
+    public enum Almacen {
+        /** HashMap en el heap, con instantánea y diario. */
+        MAPA,
+        /** TablaVehiculos (clave int, menos memoria por vehículo), con instantánea y diario. */
+        COMPACTO,
+        /** AlmacenMapeado: registros fijos en vehiculos.map, fuera del heap y persistentes por sí mismos. */
+        MAPEADO,
+        /** MapaDiferido: al arrancar solo se indexan las matrículas; cada vehículo se lee al pedirlo. */
+        DIFERIDO
+    }
+
+    /**
+     * Resultado de las operaciones que no lanzan excepciones, pensadas para
+     * cargas por lotes donde muchas filas pueden ser erróneas.
+     */
+    public enum Resultado {
+        CORRECTO,
+        MATRICULA_NO_VALIDA,
+        VELOCIDAD_NO_VALIDA,
+        YA_EXISTE,
+        NO_ENCONTRADO,
+        /** El almacén no admite los datos (p. ej. textos demasiado largos para el almacén mapeado). */
+        NO_ADMITIDO,
+        /** No se pudo escribir en el diario; el parking queda como estaba. */
+        NO_GUARDADO
+    }
 
     /**
      * Constructor del gestor de parking.
      * Inicializa el mapa y carga los datos existentes.
      */
     public GestorParking() {
-        vehiculos = new HashMap<>();
+        this(Almacen.MAPA);
+    }
+
+    /**
+     * Constructor que permite elegir el almacén de vehículos.
+     * @param almacenCompacto true para usar TablaVehiculos (clave int, menos
+     *                        memoria por vehículo) en lugar de un HashMap
+     */
+    public GestorParking(boolean almacenCompacto) {
+        this(almacenCompacto ? Almacen.COMPACTO : Almacen.MAPA);
+    }
+
+    /**
+     * Constructor que permite elegir cualquiera de los almacenes.
+     * Si el almacén mapeado no se puede abrir se avisa y se usa un HashMap.
+     * @param almacen Tipo de almacén
+     */
+    public GestorParking(Almacen almacen) {
+        AlmacenMapeado abierto = null;
+        if (almacen == Almacen.MAPEADO) {
+            try {
+                abierto = new AlmacenMapeado(FICHERO_MAPEADO);
+            } catch (IOException e) {
+                System.out.println("❌ No se pudo abrir el almacén mapeado, se usará memoria: " + e.getMessage());
+            }
+        }
+        mapeado = abierto;
+        diferido = almacen == Almacen.DIFERIDO ? new MapaDiferido() : null;
+        if (mapeado != null) {
+            vehiculos = mapeado;
+        } else if (diferido != null) {
+            vehiculos = diferido;
+        } else {
+            vehiculos = almacen == Almacen.COMPACTO ? new TablaVehiculos() : new HashMap<>();
+        }
         cargarDatos();
     }
 
@@ -24,13 +121,77 @@ public class GestorParking {
      * @throws Vehiculo.VehiculoYaExisteException Si ya existe un vehículo con esa matrícula
      */
     public void anadirVehiculo(Vehiculo v) throws Vehiculo.VehiculoYaExisteException {
-        if (vehiculos.containsKey(v.getMatricula())) {
-            throw new Vehiculo.VehiculoYaExisteException("⚠️ Ya existe un vehículo con esa matrícula.");
+        Resultado resultado = intentarAnadirVehiculo(v);
+        if (resultado == Resultado.YA_EXISTE) {
+            throw YA_EXISTE;
+        }
+        if (resultado == Resultado.NO_ADMITIDO) {
+            System.out.println("❌ El almacén no admite los datos de este vehículo.");
+            return;
+        }
+        if (resultado == Resultado.NO_GUARDADO) {
+            System.out.println("❌ Error al escribir en el diario; el vehículo no se ha añadido.");
+            return;
         }
-        vehiculos.put(v.getMatricula(), v);
         System.out.println("✅ Vehículo añadido correctamente.");
     }
 
+    /**
+     * Añade un vehículo sin lanzar excepciones ni escribir por consola.
+     * El alta se escribe en el diario antes de tocar el mapa.
+     * @param v Vehículo a añadir
+     * @return CORRECTO, YA_EXISTE, NO_ADMITIDO o NO_GUARDADO
+     */
+    public Resultado intentarAnadirVehiculo(Vehiculo v) {
+        if (vehiculos.containsKey(v.getMatricula())) {
+            return Resultado.YA_EXISTE;
+        }
+        try {
+            registrar(() -> diario.registrarAlta(v));
+        } catch (IOException e) {
+            return Resultado.NO_GUARDADO;
+        }
+        try {
+            vehiculos.put(v.getMatricula(), v);
+        } catch (IllegalArgumentException e) {
+            // Solo lo lanza el almacén mapeado, que no usa el diario
+            return Resultado.NO_ADMITIDO;
+        }
+        indexar(v);
+        ocupacion.registrarEntrada(v.getMatricula(), System.currentTimeMillis());
+        compactarSiProcede();
+        return Resultado.CORRECTO;
+    }
+
+    /**
+     * Valida los datos y añade el vehículo sin lanzar excepciones, de modo que
+     * una fila errónea en un lote no cuesta la creación de ninguna excepción.
+     * @param matricula Matrícula del vehículo
+     * @param marca Marca del vehículo
+     * @param modelo Modelo del vehículo
+     * @param añoFabricacion Año de fabricación
+     * @param velocidadActual Velocidad actual en km/h
+     * @return CORRECTO, MATRICULA_NO_VALIDA, VELOCIDAD_NO_VALIDA, YA_EXISTE, NO_ADMITIDO o NO_GUARDADO
+     */
+    public Resultado intentarAnadirVehiculo(String matricula, String marca, String modelo,
+                                            int añoFabricacion, int velocidadActual) {
+        if (!Vehiculo.esMatriculaValida(matricula)) {
+            return Resultado.MATRICULA_NO_VALIDA;
+        }
+        if (!Vehiculo.esVelocidadValida(velocidadActual)) {
+            return Resultado.VELOCIDAD_NO_VALIDA;
+        }
+        if (vehiculos.containsKey(matricula)) {
+            return Resultado.YA_EXISTE;
+        }
+        try {
+            return intentarAnadirVehiculo(new Vehiculo(matricula, marca, modelo, añoFabricacion, velocidadActual));
+        } catch (Vehiculo.MatriculaNoValidaException | Vehiculo.VelocidadNoValidaException e) {
+            // No ocurre: los datos ya se han validado arriba
+            return Resultado.MATRICULA_NO_VALIDA;
+        }
+    }
+
     /**
      * Busca un vehículo por matrícula.
      * @param matricula Matrícula a buscar
@@ -40,7 +201,7 @@ public class GestorParking {
     public Vehiculo buscarVehiculo(String matricula) throws Vehiculo.VehiculoNoEncontradoException {
         Vehiculo v = vehiculos.get(matricula);
         if (v == null) {
-            throw new Vehiculo.VehiculoNoEncontradoException("❌ Vehículo no encontrado.");
+            throw NO_ENCONTRADO;
         }
         return v;
     }
@@ -51,13 +212,249 @@ public class GestorParking {
      * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
      */
     public void eliminarVehiculo(String matricula) throws Vehiculo.VehiculoNoEncontradoException {
-        if (!vehiculos.containsKey(matricula)) {
-            throw new Vehiculo.VehiculoNoEncontradoException("❌ No se puede eliminar: vehículo no encontrado.");
+        Resultado resultado = intentarEliminarVehiculo(matricula);
+        if (resultado == Resultado.NO_ENCONTRADO) {
+            throw NO_ENCONTRADO_ELIMINAR;
+        }
+        if (resultado == Resultado.NO_GUARDADO) {
+            System.out.println("❌ Error al escribir en el diario; el vehículo no se ha eliminado.");
+            return;
         }
-        vehiculos.remove(matricula);
         System.out.println("✅ Vehículo eliminado.");
     }
 
+    /**
+     * Elimina un vehículo sin lanzar excepciones ni escribir por consola.
+     * La baja se escribe en el diario antes de tocar el mapa.
+     * @param matricula Matrícula del vehículo a eliminar
+     * @return CORRECTO, NO_ENCONTRADO o NO_GUARDADO
+     */
+    public Resultado intentarEliminarVehiculo(String matricula) {
+        Vehiculo v = vehiculos.get(matricula);
+        if (v == null) {
+            return Resultado.NO_ENCONTRADO;
+        }
+        try {
+            registrar(() -> diario.registrarBaja(matricula));
+        } catch (IOException e) {
+            return Resultado.NO_GUARDADO;
+        }
+        vehiculos.remove(matricula);
+        desindexar(v);
+        ocupacion.registrarSalida(matricula, System.currentTimeMillis());
+        compactarSiProcede();
+        return Resultado.CORRECTO;
+    }
+
+    /**
+     * Modifica marca, modelo y año de un vehículo manteniendo los índices.
+     * Los cambios hechos directamente con los setters de Vehiculo no pasan
+     * por aquí y dejarían los índices desactualizados.
+     * @param matricula Matrícula del vehículo
+     * @param marca Nueva marca
+     * @param modelo Nuevo modelo
+     * @param añoFabricacion Nuevo año de fabricación
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     */
+    public void modificarVehiculo(String matricula, String marca, String modelo, int añoFabricacion)
+            throws Vehiculo.VehiculoNoEncontradoException {
+        Vehiculo v = buscarVehiculo(matricula);
+        try {
+            registrar(() -> diario.registrarModificacion(matricula, marca, modelo, añoFabricacion,
+                    v.getVelocidadActual()));
+        } catch (IOException e) {
+            System.out.println("❌ Error al escribir en el diario, no se ha modificado: " + e.getMessage());
+            return;
+        }
+        String marcaAnterior = v.getMarca();
+        String modeloAnterior = v.getModelo();
+        int añoAnterior = v.getAñoFabricacion();
+        desindexar(v);
+        v.setMarca(marca);
+        v.setModelo(modelo);
+        v.setAñoFabricacion(añoFabricacion);
+        try {
+            // El almacén mapeado devuelve copias: hay que entregarle el vehículo modificado
+            vehiculos.put(matricula, v);
+        } catch (IllegalArgumentException e) {
+            // Solo lo lanza el almacén mapeado, que no usa el diario
+            v.setMarca(marcaAnterior);
+            v.setModelo(modeloAnterior);
+            v.setAñoFabricacion(añoAnterior);
+            indexar(v);
+            System.out.println("❌ El almacén no admite los nuevos datos: " + e.getMessage());
+            return;
+        }
+        indexar(v);
+        compactarSiProcede();
+        System.out.println("✅ Vehículo modificado.");
+    }
+
+    /**
+     * Busca los vehículos de una marca (sin distinguir mayúsculas) usando el índice.
+     * @param marca Marca a buscar
+     * @return Lista de vehículos de esa marca (vacía si no hay ninguno)
+     */
+    public List<Vehiculo> buscarPorMarca(String marca) {
+        asegurarIndices();
+        Set<String> matriculas = indiceMarca.get(normalizarMarca(marca));
+        return matriculas == null ? new ArrayList<>() : resolver(matriculas);
+    }
+
+    /**
+     * Busca los vehículos fabricados en un rango de años usando el índice.
+     * Solo se recorren los años del rango, no todo el parking.
+     * @param desde Primer año (incluido)
+     * @param hasta Último año (incluido)
+     * @return Lista de vehículos ordenada por año
+     */
+    public List<Vehiculo> buscarPorAnios(int desde, int hasta) {
+        List<Vehiculo> resultado = new ArrayList<>();
+        if (desde > hasta) {
+            return resultado;
+        }
+        asegurarIndices();
+        for (Set<String> matriculas : indiceAnio.subMap(desde, true, hasta, true).values()) {
+            resultado.addAll(resolver(matriculas));
+        }
+        return resultado;
+    }
+
+    // Convierte un conjunto de matrículas del índice en los vehículos correspondientes
+    private List<Vehiculo> resolver(Set<String> matriculas) {
+        List<Vehiculo> resultado = new ArrayList<>(matriculas.size());
+        for (String m : matriculas) {
+            resultado.add(vehiculos.get(m));
+        }
+        return resultado;
+    }
+
+    // Añade un vehículo a los índices secundarios y a las estadísticas
+    private void indexar(Vehiculo v) {
+        if (!indicesAlDia) {
+            return;
+        }
+        estadisticas.anadir(v);
+        indiceMarca.computeIfAbsent(normalizarMarca(v.getMarca()), k -> new HashSet<>()).add(v.getMatricula());
+        indiceAnio.computeIfAbsent(v.getAñoFabricacion(), k -> new HashSet<>()).add(v.getMatricula());
+    }
+
+    // Quita un vehículo de los índices secundarios (borrando las entradas que queden vacías)
+    // y de las estadísticas
+    private void desindexar(Vehiculo v) {
+        if (!indicesAlDia) {
+            return;
+        }
+        estadisticas.quitar(v);
+        String marca = normalizarMarca(v.getMarca());
+        Set<String> porMarca = indiceMarca.get(marca);
+        if (porMarca != null && porMarca.remove(v.getMatricula()) && porMarca.isEmpty()) {
+            indiceMarca.remove(marca);
+        }
+        Set<String> porAnio = indiceAnio.get(v.getAñoFabricacion());
+        if (porAnio != null && porAnio.remove(v.getMatricula()) && porAnio.isEmpty()) {
+            indiceAnio.remove(v.getAñoFabricacion());
+        }
+    }
+
+    // Vuelve a construir los índices a partir del mapa de vehículos
+    private void reconstruirIndices() {
+        indiceMarca.clear();
+        indiceAnio.clear();
+        estadisticas.reiniciar();
+        indicesAlDia = true;
+        for (Vehiculo v : vehiculos.values()) {
+            indexar(v);
+        }
+    }
+
+    // Con la carga diferida los índices se construyen en la primera consulta que los necesita
+    private void asegurarIndices() {
+        if (!indicesAlDia) {
+            reconstruirIndices();
+        }
+    }
+
+    // Clave del índice de marcas
+    private static String normalizarMarca(String marca) {
+        return marca == null ? "" : marca.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Aumenta la velocidad de un vehículo y deja constancia en el diario.
+     * @param matricula Matrícula del vehículo
+     * @param incremento Cantidad a aumentar
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     * @throws Vehiculo.VelocidadNoValidaException Si supera el límite máximo
+     */
+    public void aumentarVelocidad(String matricula, int incremento)
+            throws Vehiculo.VehiculoNoEncontradoException, Vehiculo.VelocidadNoValidaException {
+        Vehiculo v = buscarVehiculo(matricula);
+        cambiarVelocidad(v, v.getVelocidadActual() + (long) incremento);
+    }
+
+    /**
+     * Disminuye la velocidad de un vehículo y deja constancia en el diario.
+     * @param matricula Matrícula del vehículo
+     * @param decremento Cantidad a disminuir
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     * @throws Vehiculo.VelocidadNoValidaException Si es menor que 0
+     */
+    public void disminuirVelocidad(String matricula, int decremento)
+            throws Vehiculo.VehiculoNoEncontradoException, Vehiculo.VelocidadNoValidaException {
+        Vehiculo v = buscarVehiculo(matricula);
+        cambiarVelocidad(v, v.getVelocidadActual() - (long) decremento);
+    }
+
+    // Escribe en el diario la nueva velocidad y, si se guarda, la aplica y actualiza las estadísticas
+    private void cambiarVelocidad(Vehiculo v, long nueva) throws Vehiculo.VelocidadNoValidaException {
+        if (nueva < Integer.MIN_VALUE || nueva > Integer.MAX_VALUE || !Vehiculo.esVelocidadValida((int) nueva)) {
+            throw Vehiculo.VelocidadNoValidaException.FUERA_DE_RANGO;
+        }
+        int velocidad = (int) nueva;
+        try {
+            registrar(() -> diario.registrarVelocidad(v.getMatricula(), velocidad));
+        } catch (IOException e) {
+            System.out.println("❌ Error al escribir en el diario, no se ha cambiado la velocidad: " + e.getMessage());
+            return;
+        }
+        int anterior = v.getVelocidadActual();
+        v.setVelocidadActual(velocidad);
+        // El almacén mapeado devuelve copias: hay que entregarle el vehículo modificado
+        vehiculos.put(v.getMatricula(), v);
+        if (indicesAlDia) {
+            estadisticas.cambiarVelocidad(anterior, velocidad);
+        }
+        compactarSiProcede();
+    }
+
+    // Escritura en el diario que puede fallar con IOException
+    private interface EscrituraDiario {
+        void escribir() throws IOException;
+    }
+
+    // Deja constancia de una operación en el diario antes de aplicarla: si falla, el
+    // llamador no toca el mapa. Con el almacén mapeado no hace nada: cada cambio se
+    // escribe en su fichero al aplicarlo.
+    private void registrar(EscrituraDiario escritura) throws IOException {
+        if (mapeado == null) {
+            escritura.escribir();
+        }
+    }
+
+    // Cuando el diario crece demasiado se vuelca una instantánea y se vacía. Si falla
+    // no se pierde nada: las operaciones siguen en el diario.
+    private void compactarSiProcede() {
+        if (mapeado != null || diario.getRegistrosDesdeInstantanea() < OPERACIONES_POR_INSTANTANEA) {
+            return;
+        }
+        try {
+            escribirInstantanea();
+        } catch (IOException e) {
+            System.out.println("❌ Error al compactar el diario: " + e.getMessage());
+        }
+    }
+
     /**
      * Muestra todos los vehículos en el parking.
      */
@@ -73,12 +470,132 @@ public class GestorParking {
         }
     }
 
+    /**
+     * Muestra las estadísticas de la flota sin recorrer los vehículos.
+     */
+    public void mostrarEstadisticas() {
+        asegurarIndices();
+        if (estadisticas.getTotal() == 0) {
+            System.out.println("🚫 No hay vehículos registrados.");
+            return;
+        }
+        System.out.println("\n📊 Estadísticas de la flota:\n--------------------");
+        System.out.println("Total de vehículos: " + estadisticas.getTotal());
+        System.out.printf("Velocidad media: %.1f km/h (mín: %d, máx: %d)%n", estadisticas.getVelocidadMedia(),
+                estadisticas.getVelocidadMinima(), estadisticas.getVelocidadMaxima());
+        System.out.println("Vehículos por marca:");
+        estadisticas.getPorMarca().forEach((marca, n) -> System.out.println("  " + marca + ": " + n));
+        System.out.println("Vehículos por año de fabricación:");
+        estadisticas.getPorAnio().forEach((anio, n) -> System.out.println("  " + anio + ": " + n));
+    }
+
+    /**
+     * Obtiene los agregados de la flota.
+     * @return Estadísticas mantenidas por el gestor
+     */
+    public EstadisticasFlota getEstadisticas() {
+        asegurarIndices();
+        return estadisticas;
+    }
+
+    /**
+     * Muestra la ocupación actual y la de la última hora, y las estancias
+     * de los vehículos que han salido en las últimas 24 horas.
+     */
+    public void mostrarOcupacion() {
+        long ahora = System.currentTimeMillis();
+        long haceUnaHora = ahora - 3_600_000;
+        System.out.println("\n🅿️ Ocupación del parking:\n--------------------");
+        System.out.println("Vehículos dentro: " + ocupacion.getOcupacion());
+        System.out.println("Última hora: " + ocupacion.entradasEntre(haceUnaHora, ahora) + " entradas, "
+                + ocupacion.salidasEntre(haceUnaHora, ahora) + " salidas");
+        System.out.printf("Ocupación en la última hora: media %.1f, máxima %d%n",
+                ocupacion.ocupacionMedia(haceUnaHora, ahora), ocupacion.ocupacionMaxima(haceUnaHora, ahora));
+        long[] estancias = ocupacion.histogramaEstancias(ahora - 24 * 3_600_000L, ahora);
+        System.out.println("Estancias (últimas 24 h):");
+        for (int c = 0; c < estancias.length; c++) {
+            if (estancias[c] > 0) {
+                System.out.println("  desde " + OcupacionParking.limiteInferiorCubo(c) + " s: " + estancias[c]);
+            }
+        }
+    }
+
+    /**
+     * Obtiene la serie de ocupación, para consultar otras ventanas de tiempo.
+     * @return Serie de ocupación mantenida por el gestor
+     */
+    public OcupacionParking getOcupacion() {
+        return ocupacion;
+    }
+
+    /**
+     * Importa vehículos desde un CSV (matricula;marca;modelo;año;velocidad).
+     * Las filas se analizan en paralelo y se añaden sin pasar por el diario;
+     * al terminar se guarda una instantánea, que deja la importación completa
+     * en disco de una sola vez.
+     * @param ruta Fichero CSV
+     * @return Número de vehículos añadidos
+     */
+    public int importarCsv(String ruta) {
+        CsvVehiculos.Lectura lectura;
+        try {
+            lectura = CsvVehiculos.leer(Paths.get(ruta));
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("❌ Error al leer el CSV: " + e.getMessage());
+            return 0;
+        }
+        int anadidos = 0;
+        int duplicados = 0;
+        long erroneas = lectura.getFilasErroneas();
+        for (Vehiculo v : lectura.getVehiculos()) {
+            try {
+                if (vehiculos.putIfAbsent(v.getMatricula(), v) == null) {
+                    indexar(v);
+                    ocupacion.registrarEntrada(v.getMatricula(), System.currentTimeMillis());
+                    anadidos++;
+                } else {
+                    duplicados++;
+                }
+            } catch (IllegalArgumentException e) {
+                erroneas++;
+            }
+        }
+        System.out.println("📥 Importados " + anadidos + " vehículos (" + erroneas
+                + " filas erróneas, " + duplicados + " matrículas repetidas).");
+        if (anadidos > 0) {
+            guardarDatos();
+        }
+        return anadidos;
+    }
+
+    /**
+     * Exporta todos los vehículos a un CSV.
+     * @param ruta Fichero de destino
+     */
+    public void exportarCsv(String ruta) {
+        try {
+            CsvVehiculos.Escritura escritura = CsvVehiculos.escribir(vehiculos.values(), Paths.get(ruta));
+            System.out.println("💾 Exportados " + escritura.getFilas() + " vehículos a " + ruta);
+            if (escritura.getOmitidos() > 0) {
+                System.out.println("⚠️ Omitidos " + escritura.getOmitidos()
+                        + " vehículos con ';' o saltos de línea en la marca o el modelo.");
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error al exportar el CSV: " + e.getMessage());
+        }
+    }
+
     /**
      * Guarda los datos en un archivo binario.
      */
     public void guardarDatos() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(FICHERO_DATOS))) {
-            oos.writeObject(vehiculos);
+        if (mapeado != null) {
+            mapeado.sincronizar();
+            System.out.println("💾 Datos guardados correctamente.");
+            return;
+        }
+        try {
+            escribirInstantanea();
             System.out.println("💾 Datos guardados correctamente.");
         } catch (IOException e) {
             System.out.println("❌ Error al guardar los datos: " + e.getMessage());
@@ -86,20 +603,118 @@ public class GestorParking {
     }
 
     /**
-     * Carga los datos desde un archivo binario.
+     * Escribe el mapa completo en un fichero temporal, lo sustituye de forma
+     * atómica y vacía el diario, que ya está contenido en la instantánea.
+     * Si hay una caída antes de vaciar el diario, reproducirlo otra vez sobre
+     * la nueva instantánea no cambia nada.
+     */
+    private void escribirInstantanea() throws IOException {
+        InstantaneaParking.guardar(vehiculos, new File(FICHERO_DATOS));
+        diario.truncar();
+    }
+
+    /**
+     * Carga los datos desde un archivo binario y aplica encima las
+     * operaciones registradas en el diario desde entonces.
+     * Con el almacén mapeado los datos ya están en su fichero y solo se
+     * reconstruyen los índices. Con la carga diferida solo se indexan las
+     * matrículas de la instantánea, y los índices secundarios se dejan para
+     * la primera consulta que los use.
      */
-    @SuppressWarnings("unchecked")
     public void cargarDatos() {
+        if (mapeado != null) {
+            migrarAlMapeado();
+            System.out.println("📥 " + mapeado.size() + " vehículos en el almacén mapeado.");
+            reconstruirIndices();
+            ocupacion.iniciar(mapeado.size(), System.currentTimeMillis());
+            return;
+        }
         File fichero = new File(FICHERO_DATOS);
         if (!fichero.exists()) {
             System.out.println("📁 No se encontró fichero anterior. Se creará uno nuevo.");
+        } else {
+            try {
+                vehiculos.clear();
+                if (diferido == null || !diferido.abrir(fichero)) {
+                    InstantaneaParking.cargar(fichero, vehiculos);
+                }
+                System.out.println("📥 Datos cargados correctamente desde el fichero.");
+            } catch (IOException | ClassNotFoundException e) {
+                System.out.println("❌ Error al cargar los datos: " + e.getMessage());
+            }
+        }
+        try {
+            int operaciones = diario.reproducir(vehiculos);
+            if (operaciones > 0) {
+                System.out.println("📥 Recuperadas " + operaciones + " operaciones del diario.");
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error al leer el diario: " + e.getMessage());
+        }
+        if (diferido != null) {
+            indicesAlDia = false;
+        } else {
+            reconstruirIndices();
+        }
+        ocupacion.iniciar(vehiculos.size(), System.currentTimeMillis());
+    }
+
+    /**
+     * La primera vez que se usa el almacén mapeado (vacío) en una instalación
+     * que ya tenía datos, le pasa los vehículos de la instantánea con el diario
+     * aplicado. Después renombra ambos ficheros a .migrado para que no se
+     * vuelvan a importar ni se confundan con datos vigentes.
+     */
+    private void migrarAlMapeado() {
+        File fichero = new File(FICHERO_DATOS);
+        File log = new File(FICHERO_DIARIO);
+        if (mapeado.size() > 0 || (!fichero.exists() && !log.exists())) {
             return;
         }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(FICHERO_DATOS))) {
-            vehiculos = (Map<String, Vehiculo>) ois.readObject();
-            System.out.println("📥 Datos cargados correctamente desde el fichero.");
+        Map<String, Vehiculo> anteriores = new HashMap<>();
+        try {
+            if (fichero.exists()) {
+                InstantaneaParking.cargar(fichero, anteriores);
+            }
+            diario.reproducir(anteriores);
         } catch (IOException | ClassNotFoundException e) {
-            System.out.println("❌ Error al cargar los datos: " + e.getMessage());
+            System.out.println("❌ No se pudieron migrar los datos al almacén mapeado: " + e.getMessage());
+            return;
+        }
+        int omitidos = 0;
+        for (Vehiculo v : anteriores.values()) {
+            try {
+                mapeado.put(v.getMatricula(), v);
+            } catch (IllegalArgumentException e) {
+                omitidos++;
+            }
+        }
+        // Los vehículos deben estar en disco antes de retirar los ficheros de origen
+        mapeado.sincronizar();
+        try {
+            for (File origen : new File[]{fichero, log}) {
+                if (origen.exists()) {
+                    Files.move(origen.toPath(), Paths.get(origen.getPath() + ".migrado"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ No se pudieron renombrar los ficheros migrados: " + e.getMessage());
+        }
+        System.out.println("📥 Migrados " + (anteriores.size() - omitidos) + " vehículos al almacén mapeado.");
+        if (omitidos > 0) {
+            System.out.println("⚠️ " + omitidos + " vehículos no caben en el almacén mapeado;"
+                    + " siguen en " + FICHERO_DATOS + ".migrado y " + FICHERO_DIARIO + ".migrado.");
+        }
+    }
+
+    /**
+     * Con la carga diferida, empieza a leer en segundo plano los vehículos
+     * que aún no se han pedido. Con los demás almacenes no hace nada.
+     */
+    public void iniciarPrecarga() {
+        if (diferido != null) {
+            diferido.iniciarPrecarga();
         }
     }
 
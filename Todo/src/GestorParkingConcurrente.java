@@ -0,0 +1,338 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Variante de GestorParking que pueden usar a la vez los hilos de varias
+ * puertas de entrada y salida.
+ * Las consultas no bloquean. Las altas, bajas y cambios de una misma
+ * matrícula se serializan con las operaciones atómicas de ConcurrentHashMap,
+ * así que no hay huecos entre comprobar y actuar. Dentro de esas operaciones
+ * solo se encola el registro del diario; se escribe después, ya sin el
+ * cerrojo de la matrícula, para que una puerta no espere a otra mientras
+ * escribe o hace fsync.
+ * Usa los mismos ficheros que GestorParking (nunca deben abrirse los dos a la vez).
+ */
+public class GestorParkingConcurrente {
+    // Mapa concurrente de vehículos (clave: matrícula)
+    private final ConcurrentHashMap<String, Vehiculo> vehiculos = new ConcurrentHashMap<>();
+    // Nombre del archivo para persistencia
+    private final String FICHERO_DATOS = "vehiculos.dat";
+    // Diario con las operaciones posteriores a la última instantánea
+    private final DiarioParking diario = new DiarioParking("vehiculos.log");
+    // Registros decididos dentro del compute de cada matrícula y aún no escritos en el
+    // diario. Se encolan con la matrícula bloqueada, así que su orden es el real
+    private final ConcurrentLinkedQueue<EscrituraDiario> pendientesDiario = new ConcurrentLinkedQueue<>();
+    // Un solo hilo a la vez pasa la cola al diario
+    private final ReentrantLock cerrojoDiario = new ReentrantLock();
+    // Operaciones acumuladas en el diario antes de compactarlo en una instantánea
+    private static final int OPERACIONES_POR_INSTANTANEA = 10_000;
+    // Índices secundarios: marca (en minúsculas) → matrículas, y año → matrículas
+    private final ConcurrentHashMap<String, Set<String>> indiceMarca = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Set<String>> indiceAnio = new ConcurrentSkipListMap<>();
+    // Las modificaciones comparten el cerrojo de lectura; la instantánea toma el de
+    // escritura para que ninguna operación quede entre la copia y el vaciado del diario
+    private final ReadWriteLock cerrojoInstantanea = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor del gestor concurrente.
+     * Carga los datos existentes antes de aceptar operaciones.
+     */
+    public GestorParkingConcurrente() {
+        cargarDatos();
+    }
+
+    /**
+     * Añade un nuevo vehículo al parking de forma atómica.
+     * @param v Vehículo a añadir
+     * @throws Vehiculo.VehiculoYaExisteException Si ya existe un vehículo con esa matrícula
+     */
+    public void anadirVehiculo(Vehiculo v) throws Vehiculo.VehiculoYaExisteException {
+        boolean[] anadido = {false};
+        cerrojoInstantanea.readLock().lock();
+        try {
+            vehiculos.compute(v.getMatricula(), (matricula, actual) -> {
+                if (actual != null) {
+                    return actual;
+                }
+                indexar(v);
+                pendientesDiario.add(() -> diario.registrarAlta(v));
+                anadido[0] = true;
+                return v;
+            });
+        } finally {
+            cerrojoInstantanea.readLock().unlock();
+        }
+        if (!anadido[0]) {
+            throw GestorParking.YA_EXISTE;
+        }
+        escribirPendientes();
+        compactarSiProcede();
+    }
+
+    /**
+     * Busca un vehículo por matrícula sin bloquear.
+     * @param matricula Matrícula a buscar
+     * @return Vehículo encontrado
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     */
+    public Vehiculo buscarVehiculo(String matricula) throws Vehiculo.VehiculoNoEncontradoException {
+        Vehiculo v = vehiculos.get(matricula);
+        if (v == null) {
+            throw GestorParking.NO_ENCONTRADO;
+        }
+        return v;
+    }
+
+    /**
+     * Elimina un vehículo del parking de forma atómica.
+     * @param matricula Matrícula del vehículo a eliminar
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     */
+    public void eliminarVehiculo(String matricula) throws Vehiculo.VehiculoNoEncontradoException {
+        boolean[] eliminado = {false};
+        cerrojoInstantanea.readLock().lock();
+        try {
+            vehiculos.computeIfPresent(matricula, (m, actual) -> {
+                desindexar(actual);
+                pendientesDiario.add(() -> diario.registrarBaja(m));
+                eliminado[0] = true;
+                return null;
+            });
+        } finally {
+            cerrojoInstantanea.readLock().unlock();
+        }
+        if (!eliminado[0]) {
+            throw GestorParking.NO_ENCONTRADO_ELIMINAR;
+        }
+        escribirPendientes();
+        compactarSiProcede();
+    }
+
+    /**
+     * Aumenta la velocidad de un vehículo de forma atómica.
+     * @param matricula Matrícula del vehículo
+     * @param incremento Cantidad a aumentar
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     * @throws Vehiculo.VelocidadNoValidaException Si supera el límite máximo
+     */
+    public void aumentarVelocidad(String matricula, int incremento)
+            throws Vehiculo.VehiculoNoEncontradoException, Vehiculo.VelocidadNoValidaException {
+        cambiarVelocidad(matricula, incremento);
+    }
+
+    /**
+     * Disminuye la velocidad de un vehículo de forma atómica.
+     * @param matricula Matrícula del vehículo
+     * @param decremento Cantidad a disminuir
+     * @throws Vehiculo.VehiculoNoEncontradoException Si no se encuentra el vehículo
+     * @throws Vehiculo.VelocidadNoValidaException Si es menor que 0
+     */
+    public void disminuirVelocidad(String matricula, int decremento)
+            throws Vehiculo.VehiculoNoEncontradoException, Vehiculo.VelocidadNoValidaException {
+        cambiarVelocidad(matricula, -decremento);
+    }
+
+    // Aplica el cambio y encola su registro dentro del compute para que el orden del diario sea el real
+    private void cambiarVelocidad(String matricula, int cambio)
+            throws Vehiculo.VehiculoNoEncontradoException, Vehiculo.VelocidadNoValidaException {
+        int[] nueva = {Vehiculo.VELOCIDAD_FUERA_DE_RANGO};
+        Vehiculo v;
+        cerrojoInstantanea.readLock().lock();
+        try {
+            v = vehiculos.computeIfPresent(matricula, (m, actual) -> {
+                nueva[0] = cambio >= 0 ? actual.intentarAumentarVelocidad(cambio)
+                        : actual.intentarDisminuirVelocidad(-cambio);
+                if (nueva[0] != Vehiculo.VELOCIDAD_FUERA_DE_RANGO) {
+                    int velocidad = nueva[0];
+                    pendientesDiario.add(() -> diario.registrarVelocidad(m, velocidad));
+                }
+                return actual;
+            });
+        } finally {
+            cerrojoInstantanea.readLock().unlock();
+        }
+        if (v == null) {
+            throw GestorParking.NO_ENCONTRADO;
+        }
+        if (nueva[0] == Vehiculo.VELOCIDAD_FUERA_DE_RANGO) {
+            throw Vehiculo.VelocidadNoValidaException.FUERA_DE_RANGO;
+        }
+        escribirPendientes();
+        compactarSiProcede();
+    }
+
+    /**
+     * Busca los vehículos de una marca (sin distinguir mayúsculas) usando el índice.
+     * @param marca Marca a buscar
+     * @return Lista de vehículos de esa marca (vacía si no hay ninguno)
+     */
+    public List<Vehiculo> buscarPorMarca(String marca) {
+        Set<String> matriculas = indiceMarca.get(normalizarMarca(marca));
+        return matriculas == null ? new ArrayList<>() : resolver(matriculas);
+    }
+
+    /**
+     * Busca los vehículos fabricados en un rango de años usando el índice.
+     * @param desde Primer año (incluido)
+     * @param hasta Último año (incluido)
+     * @return Lista de vehículos ordenada por año
+     */
+    public List<Vehiculo> buscarPorAnios(int desde, int hasta) {
+        List<Vehiculo> resultado = new ArrayList<>();
+        if (desde > hasta) {
+            return resultado;
+        }
+        for (Set<String> matriculas : indiceAnio.subMap(desde, true, hasta, true).values()) {
+            resultado.addAll(resolver(matriculas));
+        }
+        return resultado;
+    }
+
+    /**
+     * Guarda una instantánea completa y vacía el diario.
+     */
+    public void guardarDatos() {
+        try {
+            escribirInstantanea();
+            System.out.println("💾 Datos guardados correctamente.");
+        } catch (IOException e) {
+            System.out.println("❌ Error al guardar los datos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Carga la última instantánea y aplica encima el diario.
+     */
+    public void cargarDatos() {
+        File fichero = new File(FICHERO_DATOS);
+        if (!fichero.exists()) {
+            System.out.println("📁 No se encontró fichero anterior. Se creará uno nuevo.");
+        } else {
+            try {
+                InstantaneaParking.cargar(fichero, vehiculos);
+                System.out.println("📥 Datos cargados correctamente desde el fichero.");
+            } catch (IOException | ClassNotFoundException e) {
+                System.out.println("❌ Error al cargar los datos: " + e.getMessage());
+            }
+        }
+        try {
+            int operaciones = diario.reproducir(vehiculos);
+            if (operaciones > 0) {
+                System.out.println("📥 Recuperadas " + operaciones + " operaciones del diario.");
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error al leer el diario: " + e.getMessage());
+        }
+        indiceMarca.clear();
+        indiceAnio.clear();
+        for (Vehiculo v : vehiculos.values()) {
+            indexar(v);
+        }
+    }
+
+    /**
+     * Obtiene el mapa de vehículos (vista concurrente, no copiar para iterar).
+     * @return Mapa de vehículos
+     */
+    public Map<String, Vehiculo> getVehiculos() {
+        return vehiculos;
+    }
+
+    // Escritura en el diario que puede fallar con IOException
+    private interface EscrituraDiario {
+        void escribir() throws IOException;
+    }
+
+    // Pasa al diario todo lo encolado. El hilo que consigue el cerrojo escribe también
+    // lo que han encolado los demás, así que al volver el registro propio ya está escrito.
+    // Los fallos del diario se avisan por consola, igual que en GestorParking
+    private void escribirPendientes() {
+        cerrojoDiario.lock();
+        try {
+            EscrituraDiario escritura;
+            while ((escritura = pendientesDiario.poll()) != null) {
+                try {
+                    escritura.escribir();
+                } catch (IOException e) {
+                    System.out.println("❌ Error al escribir en el diario: " + e.getMessage());
+                }
+            }
+        } finally {
+            cerrojoDiario.unlock();
+        }
+    }
+
+    // Cuando el diario crece demasiado, un único hilo vuelca la instantánea
+    private void compactarSiProcede() {
+        if (diario.getRegistrosDesdeInstantanea() < OPERACIONES_POR_INSTANTANEA) {
+            return;
+        }
+        cerrojoInstantanea.writeLock().lock();
+        try {
+            // Otro hilo puede haber compactado mientras esperábamos el cerrojo
+            if (diario.getRegistrosDesdeInstantanea() >= OPERACIONES_POR_INSTANTANEA) {
+                escribirInstantanea();
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error al compactar el diario: " + e.getMessage());
+        } finally {
+            cerrojoInstantanea.writeLock().unlock();
+        }
+    }
+
+    // Con el cerrojo de escritura tomado no hay modificaciones en curso; lo que aún
+    // esté en la cola se escribe antes para que no acabe detrás del vaciado del diario
+    private void escribirInstantanea() throws IOException {
+        cerrojoInstantanea.writeLock().lock();
+        try {
+            escribirPendientes();
+            InstantaneaParking.guardar(vehiculos, new File(FICHERO_DATOS));
+            diario.truncar();
+        } finally {
+            cerrojoInstantanea.writeLock().unlock();
+        }
+    }
+
+    // Convierte un conjunto de matrículas del índice en vehículos, saltando los ya eliminados
+    private List<Vehiculo> resolver(Set<String> matriculas) {
+        List<Vehiculo> resultado = new ArrayList<>(matriculas.size());
+        for (String m : matriculas) {
+            Vehiculo v = vehiculos.get(m);
+            if (v != null) {
+                resultado.add(v);
+            }
+        }
+        return resultado;
+    }
+
+    // Se llama dentro del compute de la matrícula, así que no compite con su desindexado
+    private void indexar(Vehiculo v) {
+        indiceMarca.computeIfAbsent(normalizarMarca(v.getMarca()), k -> ConcurrentHashMap.newKeySet())
+                .add(v.getMatricula());
+        indiceAnio.computeIfAbsent(v.getAñoFabricacion(), k -> ConcurrentHashMap.newKeySet())
+                .add(v.getMatricula());
+    }
+
+    // Los conjuntos vacíos se dejan en el índice: quitarlos competiría con altas simultáneas
+    private void desindexar(Vehiculo v) {
+        Set<String> porMarca = indiceMarca.get(normalizarMarca(v.getMarca()));
+        if (porMarca != null) {
+            porMarca.remove(v.getMatricula());
+        }
+        Set<String> porAnio = indiceAnio.get(v.getAñoFabricacion());
+        if (porAnio != null) {
+            porAnio.remove(v.getMatricula());
+        }
+    }
+
+    // Clave del índice de marcas
+    private static String normalizarMarca(String marca) {
+        return marca == null ? "" : marca.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * Mapa int → int con direccionamiento abierto sobre dos arrays, sin crear
+ * objetos por entrada (mismo esquema que TablaVehiculos). Lo usan los
+ * almacenes para guardar matrícula codificada → posición del registro.
+ * Las claves no pueden ser negativas; obtener() y quitar() devuelven -1
+ * si la clave no está.
+ */
+class IndiceEnteros {
+    private static final int VACIO = -1;
+    private int[] claves;
+    private int[] valores;
+    private int tamano;
+
+    IndiceEnteros() {
+        this(16);
+    }
+
+    /**
+     * @param esperadas Número de entradas previsto, para no ampliar mientras se llena
+     */
+    IndiceEnteros(int esperadas) {
+        int capacidad = 16;
+        while (capacidad * 0.7 < esperadas) {
+            capacidad <<= 1;
+        }
+        claves = nuevo(capacidad);
+        valores = new int[capacidad];
+    }
+
+    int obtener(int clave) {
+        int i = buscar(clave);
+        return claves[i] == VACIO ? -1 : valores[i];
+    }
+
+    void poner(int clave, int valor) {
+        int i = buscar(clave);
+        if (claves[i] == VACIO) {
+            claves[i] = clave;
+            tamano++;
+        }
+        valores[i] = valor;
+        if (tamano > claves.length * 0.7) {
+            ampliar();
+        }
+    }
+
+    int quitar(int clave) {
+        int i = buscar(clave);
+        if (claves[i] == VACIO) {
+            return -1;
+        }
+        int valor = valores[i];
+        // Borrado por desplazamiento hacia atrás, sin lápidas
+        int mascara = claves.length - 1;
+        int libre = i;
+        while (true) {
+            i = (i + 1) & mascara;
+            if (claves[i] == VACIO) {
+                break;
+            }
+            int ideal = posicion(claves[i], mascara);
+            boolean mover = libre <= i ? (ideal <= libre || ideal > i) : (ideal <= libre && ideal > i);
+            if (mover) {
+                claves[libre] = claves[i];
+                valores[libre] = valores[i];
+                libre = i;
+            }
+        }
+        claves[libre] = VACIO;
+        tamano--;
+        return valor;
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    void vaciar() {
+        Arrays.fill(claves, VACIO);
+        tamano = 0;
+    }
+
+    private int buscar(int clave) {
+        int mascara = claves.length - 1;
+        int i = posicion(clave, mascara);
+        while (claves[i] != VACIO && claves[i] != clave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void ampliar() {
+        int[] clavesAntiguas = claves;
+        int[] valoresAntiguos = valores;
+        claves = nuevo(clavesAntiguas.length * 2);
+        valores = new int[clavesAntiguas.length * 2];
+        for (int j = 0; j < clavesAntiguas.length; j++) {
+            if (clavesAntiguas[j] != VACIO) {
+                int i = buscar(clavesAntiguas[j]);
+                claves[i] = clavesAntiguas[j];
+                valores[i] = valoresAntiguos[j];
+            }
+        }
+    }
+
+    private static int posicion(int clave, int mascara) {
+        int h = clave * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    private static int[] nuevo(int capacidad) {
+        int[] claves = new int[capacidad];
+        Arrays.fill(claves, VACIO);
+        return claves;
+    }
+}
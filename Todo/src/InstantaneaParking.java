@@ -0,0 +1,61 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Lectura y escritura de la instantánea completa del parking (vehiculos.dat).
+ * La comparten los gestores para que ambos puedan abrir el mismo fichero.
+ * Se escribe con CodecVehiculos; los ficheros antiguos guardados con
+ * ObjectOutputStream se siguen pudiendo leer.
+ */
+public class InstantaneaParking {
+    // Cabecera de un flujo de serialización de Java (STREAM_MAGIC + STREAM_VERSION)
+    private static final int MAGIA_SERIALIZACION = 0xACED0005;
+
+    private InstantaneaParking() {
+    }
+
+    /**
+     * Escribe el mapa completo en un fichero temporal y lo sustituye de forma
+     * atómica, de modo que una caída a mitad nunca deja la instantánea a medias.
+     * @param vehiculos Mapa a guardar
+     * @param fichero Fichero de destino
+     * @throws IOException Si falla la escritura
+     */
+    public static void guardar(Map<String, Vehiculo> vehiculos, File fichero) throws IOException {
+        File temporal = new File(fichero.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal)) {
+            CodecVehiculos.escribir(vehiculos.values(), fos);
+            fos.getFD().sync();
+        }
+        Files.move(temporal.toPath(), fichero.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee una instantánea y añade sus vehículos al mapa indicado.
+     * Distingue por los primeros bytes el formato binario propio del antiguo
+     * formato de serialización de Java.
+     * @param fichero Fichero de origen
+     * @param destino Mapa donde se guardan los vehículos
+     * @throws IOException Si falla la lectura o el formato no se reconoce
+     * @throws ClassNotFoundException Si un fichero antiguo contiene clases desconocidas
+     */
+    @SuppressWarnings("unchecked")
+    public static void cargar(File fichero, Map<String, Vehiculo> destino) throws IOException, ClassNotFoundException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fichero), 1 << 16))) {
+            in.mark(4);
+            int magia = in.readInt();
+            if (magia == CodecVehiculos.MAGIA) {
+                CodecVehiculos.leer(in, destino);
+            } else if (magia == MAGIA_SERIALIZACION) {
+                in.reset();
+                ObjectInputStream ois = new ObjectInputStream(in);
+                destino.putAll((Map<String, Vehiculo>) ois.readObject());
+            } else {
+                throw new IOException("Formato de fichero desconocido");
+            }
+        }
+    }
+}
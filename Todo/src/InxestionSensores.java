@@ -0,0 +1,99 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Inxestión de lecturas de muchos sensores a la vez. Cada sensor tiene su
+ * BufferSensor y un único hilo productor; un hilo consumidor recorre los
+ * buffers y entrega las lecturas por lotes al destino, de modo que el
+ * almacenamiento solo se sincroniza una vez por lote y no por lectura.
+ */
+class InxestionSensores {
+    /**
+     * Recibe los lotes de lecturas del consumidor
+     */
+    interface DestinoLotes {
+        void gardarLote(int sensor, long[] instantes, float[] temperaturas, int n);
+    }
+
+    private final BufferSensor[] buffers;
+    private final DestinoLotes destino;
+    private final long[] loteInstantes;
+    private final float[] loteTemperaturas;
+    private final Thread consumidor;
+    private volatile boolean activa = true;
+    private volatile long inxeridas;
+
+    /**
+     * Crea los buffers y arranca el hilo consumidor
+     * @param numSensores Sensores (identificados de 0 a numSensores-1)
+     * @param capacidadePorSensor Lecturas que puede acumular cada sensor
+     * @param tamanoLote Máximo de lecturas por lote
+     * @param destino Almacenamiento que recibe los lotes
+     */
+    public InxestionSensores(int numSensores, int capacidadePorSensor, int tamanoLote, DestinoLotes destino) {
+        buffers = new BufferSensor[numSensores];
+        for (int i = 0; i < numSensores; i++) {
+            buffers[i] = new BufferSensor(capacidadePorSensor);
+        }
+        this.destino = destino;
+        loteInstantes = new long[tamanoLote];
+        loteTemperaturas = new float[tamanoLote];
+        consumidor = new Thread(this::consumir, "inxestion-sensores");
+        consumidor.setDaemon(true);
+        consumidor.start();
+    }
+
+    /**
+     * Entrega una lectura. Cada sensor debe recibir lecturas desde un solo hilo.
+     * @param sensor Identificador del sensor
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     * @param temperatura Temperatura en °C
+     * @return false si el buffer del sensor está lleno y la lectura se descarta
+     */
+    public boolean ofrecer(int sensor, long instante, float temperatura) {
+        return buffers[sensor].ofrecer(instante, temperatura);
+    }
+
+    /**
+     * Detiene el consumidor después de entregar todas las lecturas pendientes
+     * @throws InterruptedException Si se interrumpe la espera
+     */
+    public void deter() throws InterruptedException {
+        activa = false;
+        LockSupport.unpark(consumidor);
+        consumidor.join();
+    }
+
+    public long getInxeridas() {
+        return inxeridas;
+    }
+
+    public long getRexeitadas() {
+        long total = 0;
+        for (BufferSensor buffer : buffers) {
+            total += buffer.getRexeitadas();
+        }
+        return total;
+    }
+
+    // Recorre los buffers hasta que se detiene y no queda nada pendiente
+    private void consumir() {
+        while (true) {
+            boolean fin = !activa;
+            long lote = 0;
+            for (int sensor = 0; sensor < buffers.length; sensor++) {
+                int n = buffers[sensor].drenar(loteInstantes, loteTemperaturas);
+                if (n > 0) {
+                    destino.gardarLote(sensor, loteInstantes, loteTemperaturas, n);
+                    lote += n;
+                }
+            }
+            inxeridas += lote;
+            if (lote == 0) {
+                if (fin) {
+                    return;
+                }
+                LockSupport.parkNanos(100_000);
+            }
+        }
+    }
+}
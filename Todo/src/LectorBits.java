@@ -0,0 +1,43 @@
+/**
+ * Lector de bits sobre un tramo de un array de bytes (pareja de EscritorBits).
+ */
+class LectorBits {
+    private final byte[] bytes;
+    private final int fin;
+    private int posicion;   // Byte en curso
+    private int usados;     // Bits ya leídos del byte en curso
+
+    public LectorBits(byte[] bytes, int desde, int longitud) {
+        this.bytes = bytes;
+        this.posicion = desde;
+        this.fin = desde + longitud;
+    }
+
+    /**
+     * Lee un valor sin signo
+     * @param bits Número de bits (1 a 64)
+     * @return Valor leído
+     */
+    public long ler(int bits) {
+        long valor = 0;
+        while (bits > 0) {
+            if (posicion >= fin) {
+                throw new IllegalStateException("Fin dos datos do bloque");
+            }
+            int n = Math.min(8 - usados, bits);
+            int trozo = (bytes[posicion] >>> (8 - usados - n)) & ((1 << n) - 1);
+            valor = (valor << n) | trozo;
+            usados += n;
+            bits -= n;
+            if (usados == 8) {
+                posicion++;
+                usados = 0;
+            }
+        }
+        return valor;
+    }
+
+    public boolean lerBit() {
+        return ler(1) == 1;
+    }
+}
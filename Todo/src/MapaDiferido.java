@@ -0,0 +1,291 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Mapa de vehículos que se abre sobre una instantánea de CodecVehiculos sin
+ * crear los vehículos: al abrir solo se leen los diccionarios y se construye
+ * el índice matrícula codificada → nº de registro. Cada Vehiculo se lee del
+ * fichero la primera vez que se pide y queda en memoria a partir de entonces.
+ *
+ * Los registros del fichero son fijos (15 bytes) y están al final, así que
+ * la posición de cada uno se calcula sin guardar desplazamientos. Los
+ * vehículos que no estaban en el fichero se guardan en un HashMap aparte.
+ *
+ * Una precarga opcional en segundo plano va leyendo los registros pendientes
+ * por bloques; todos los métodos están sincronizados para poder convivir con ella.
+ * Las lecturas usan un RandomAccessFile (posicionar y leer con el cerrojo del
+ * mapa) y no un FileChannel: si se interrumpe un hilo mientras lee de un
+ * FileChannel, el canal se cierra y ya no se podría leer ningún registro más.
+ * Sustituir la instantánea (por renombrado atómico) no afecta al fichero ya
+ * abierto, que sigue siendo el original hasta volver a llamar a abrir().
+ */
+public class MapaDiferido extends AbstractMap<String, Vehiculo> implements Closeable {
+    // Registros que lee de una vez la precarga
+    private static final int REGISTROS_POR_BLOQUE = 4096;
+
+    private RandomAccessFile archivo;
+    private CodecVehiculos.Cabecera cabecera;
+    private long inicioRegistros;
+    private IndiceEnteros indice = new IndiceEnteros();
+    // Vehículo ya leído de cada registro (null si aún no se ha pedido o se eliminó)
+    private Vehiculo[] cargados = new Vehiculo[0];
+    private final BitSet eliminados = new BitSet();
+    // Vehículos añadidos después de abrir el fichero
+    private final Map<String, Vehiculo> anadidos = new HashMap<>();
+    private Thread precarga;
+
+    /**
+     * Abre una instantánea y construye solo el índice de matrículas.
+     * Descarta lo que tuviera el mapa antes.
+     * @param fichero Instantánea a abrir
+     * @return false si el fichero no está en el formato de CodecVehiculos
+     *         (p. ej. un fichero antiguo serializado); el mapa queda vacío
+     * @throws IOException Si el fichero está dañado o no se puede leer
+     */
+    public synchronized boolean abrir(File fichero) throws IOException {
+        clear();
+        RandomAccessFile nuevo = new RandomAccessFile(fichero, "r");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fichero), 1 << 16))) {
+            if (in.readInt() != CodecVehiculos.MAGIA) {
+                nuevo.close();
+                return false;
+            }
+            CodecVehiculos.Cabecera leida = CodecVehiculos.leerCabecera(in);
+            long inicio = nuevo.length() - (long) CodecVehiculos.TAMANO_REGISTRO * leida.numVehiculos;
+            IndiceEnteros nuevoIndice = new IndiceEnteros(leida.numVehiculos);
+            // Solo interesa la matrícula de cada registro; el resto se salta
+            byte[] bloque = new byte[CodecVehiculos.TAMANO_REGISTRO * REGISTROS_POR_BLOQUE];
+            ByteBuffer registros = ByteBuffer.wrap(bloque);
+            int leidos = 0;
+            while (leidos < leida.numVehiculos) {
+                int enBloque = Math.min(leida.numVehiculos - leidos, REGISTROS_POR_BLOQUE);
+                in.readFully(bloque, 0, enBloque * CodecVehiculos.TAMANO_REGISTRO);
+                for (int i = 0; i < enBloque; i++) {
+                    nuevoIndice.poner(registros.getInt(i * CodecVehiculos.TAMANO_REGISTRO), leidos + i);
+                }
+                leidos += enBloque;
+            }
+            archivo = nuevo;
+            cabecera = leida;
+            inicioRegistros = inicio;
+            indice = nuevoIndice;
+            cargados = new Vehiculo[leida.numVehiculos];
+            return true;
+        } catch (IOException e) {
+            nuevo.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Empieza a leer en segundo plano los registros que aún no se han pedido.
+     * No hace nada si no hay fichero abierto o la precarga ya está en marcha.
+     */
+    public synchronized void iniciarPrecarga() {
+        if (archivo == null || (precarga != null && precarga.isAlive())) {
+            return;
+        }
+        RandomAccessFile origen = archivo;
+        precarga = new Thread(() -> precargar(origen), "precarga-vehiculos");
+        precarga.setDaemon(true);
+        precarga.start();
+    }
+
+    /**
+     * Indica si todos los registros del fichero están ya en memoria.
+     * @return true si no queda ninguno por leer
+     */
+    public synchronized boolean estaPrecargado() {
+        for (int r = 0; r < cargados.length; r++) {
+            if (cargados[r] == null && !eliminados.get(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Vehiculo get(Object matricula) {
+        int registro = registroDe(matricula);
+        return registro < 0 ? anadidos.get(matricula) : cargar(registro);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object matricula) {
+        return registroDe(matricula) >= 0 || anadidos.containsKey(matricula);
+    }
+
+    @Override
+    public synchronized Vehiculo put(String matricula, Vehiculo v) {
+        int registro = registroDe(matricula);
+        if (registro < 0) {
+            return anadidos.put(matricula, v);
+        }
+        Vehiculo anterior = cargar(registro);
+        cargados[registro] = v;
+        return anterior;
+    }
+
+    @Override
+    public synchronized Vehiculo putIfAbsent(String matricula, Vehiculo v) {
+        Vehiculo actual = get(matricula);
+        return actual != null ? actual : put(matricula, v);
+    }
+
+    @Override
+    public synchronized Vehiculo remove(Object matricula) {
+        int registro = registroDe(matricula);
+        if (registro < 0) {
+            return anadidos.remove(matricula);
+        }
+        Vehiculo anterior = cargar(registro);
+        indice.quitar(Vehiculo.codificarMatricula((String) matricula));
+        eliminados.set(registro);
+        cargados[registro] = null;
+        return anterior;
+    }
+
+    @Override
+    public synchronized int size() {
+        return indice.tamano() + anadidos.size();
+    }
+
+    /**
+     * Vacía el mapa, para la precarga y cierra el fichero.
+     */
+    @Override
+    public synchronized void clear() {
+        if (precarga != null) {
+            precarga.interrupt();
+            precarga = null;
+        }
+        if (archivo != null) {
+            try {
+                archivo.close();
+            } catch (IOException e) {
+                // Solo se leía de él: no hay nada que perder
+            }
+            archivo = null;
+        }
+        cabecera = null;
+        indice = new IndiceEnteros();
+        cargados = new Vehiculo[0];
+        eliminados.clear();
+        anadidos.clear();
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Recorre primero los registros del fichero (leyendo los pendientes)
+     * y después los vehículos añadidos.
+     */
+    @Override
+    public Set<Entry<String, Vehiculo>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Vehiculo>> iterator() {
+                return new Iterator<>() {
+                    private int registro = -1;
+                    private Iterator<Vehiculo> resto;
+                    private Vehiculo siguiente = avanzar();
+
+                    private Vehiculo avanzar() {
+                        synchronized (MapaDiferido.this) {
+                            if (resto == null) {
+                                registro = eliminados.nextClearBit(registro + 1);
+                                if (registro < cargados.length) {
+                                    return cargar(registro);
+                                }
+                                resto = new ArrayList<>(anadidos.values()).iterator();
+                            }
+                            return resto.hasNext() ? resto.next() : null;
+                        }
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return siguiente != null;
+                    }
+
+                    @Override
+                    public Entry<String, Vehiculo> next() {
+                        if (siguiente == null) {
+                            throw new NoSuchElementException();
+                        }
+                        Vehiculo v = siguiente;
+                        siguiente = avanzar();
+                        return new SimpleImmutableEntry<>(v.getMatricula(), v);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return MapaDiferido.this.size();
+            }
+        };
+    }
+
+    // Nº de registro del fichero para esa matrícula, o -1 si no está en él
+    private int registroDe(Object matricula) {
+        if (!(matricula instanceof String)) {
+            return -1;
+        }
+        int codigo = Vehiculo.codificarMatricula((String) matricula);
+        return codigo < 0 ? -1 : indice.obtener(codigo);
+    }
+
+    // Devuelve el vehículo del registro, leyéndolo del fichero si es la primera vez
+    private Vehiculo cargar(int registro) {
+        Vehiculo v = cargados[registro];
+        if (v == null) {
+            byte[] registroLeido = new byte[CodecVehiculos.TAMANO_REGISTRO];
+            try {
+                // Se llama con el cerrojo del mapa, así que nadie mueve la posición entre seek y lectura
+                archivo.seek(inicioRegistros + (long) CodecVehiculos.TAMANO_REGISTRO * registro);
+                archivo.readFully(registroLeido);
+                v = cabecera.leerRegistro(ByteBuffer.wrap(registroLeido));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo leer el vehículo del registro " + registro, e);
+            }
+            cargados[registro] = v;
+        }
+        return v;
+    }
+
+    // Lee por bloques los registros pendientes; se detiene si el mapa se vacía o se reabre.
+    // Cada bloque se lee y se convierte con el cerrojo tomado, que se suelta entre bloques
+    private void precargar(RandomAccessFile origen) {
+        byte[] bloque = new byte[CodecVehiculos.TAMANO_REGISTRO * REGISTROS_POR_BLOQUE];
+        ByteBuffer registros = ByteBuffer.wrap(bloque);
+        int total;
+        synchronized (this) {
+            total = cargados.length;
+        }
+        try {
+            for (int desde = 0; desde < total && !Thread.currentThread().isInterrupted(); desde += REGISTROS_POR_BLOQUE) {
+                int enBloque = Math.min(total - desde, REGISTROS_POR_BLOQUE);
+                synchronized (this) {
+                    if (archivo != origen) {
+                        return;
+                    }
+                    origen.seek(inicioRegistros + (long) CodecVehiculos.TAMANO_REGISTRO * desde);
+                    origen.readFully(bloque, 0, enBloque * CodecVehiculos.TAMANO_REGISTRO);
+                    for (int r = desde; r < desde + enBloque; r++) {
+                        if (cargados[r] == null && !eliminados.get(r)) {
+                            registros.position((r - desde) * CodecVehiculos.TAMANO_REGISTRO);
+                            cargados[r] = cabecera.leerRegistro(registros);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Fichero dañado: los registros se leerán (y fallarán) al pedirlos
+        }
+    }
+}
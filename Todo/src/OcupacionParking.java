@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * Serie temporal de ocupación del parking a partir de los eventos de
+ * entrada y salida de vehículos.
+ *
+ * Los eventos se escriben en un anillo de arrays primitivos (instante,
+ * matrícula codificada, tipo) y una etapa de consolidación los vuelca, en
+ * orden, en los agregados:
+ * <ul>
+ *   <li>Por minuto: sumas acumuladas de entradas, salidas y ocupación al
+ *       final de cada minuto, y la ocupación máxima dentro del minuto.</li>
+ *   <li>Por hora: histograma acumulado de estancias en cubos logarítmicos
+ *       (el cubo c cuenta estancias de [2^(c-1), 2^c) segundos).</li>
+ * </ul>
+ * Con las sumas acumuladas, las entradas, salidas, ocupación media y
+ * estancias de cualquier ventana salen de restar dos posiciones, sin volver
+ * a recorrer los eventos. El anillo se consolida cuando se llena y antes de
+ * cada consulta. La clase no es segura para varios hilos, igual que GestorParking.
+ */
+public class OcupacionParking {
+    /** Número de cubos del histograma de estancias. */
+    public static final int NUM_CUBOS = 32;
+
+    private static final int CAPACIDAD_ANILLO = 1 << 12;
+    private static final long MS_MINUTO = 60_000;
+    private static final long MS_HORA = 3_600_000;
+    private static final byte ENTRADA = 0;
+    private static final byte SALIDA = 1;
+
+    // Anillo de eventos pendientes de consolidar
+    private final long[] anilloInstantes = new long[CAPACIDAD_ANILLO];
+    private final int[] anilloMatriculas = new int[CAPACIDAD_ANILLO];
+    private final byte[] anilloTipos = new byte[CAPACIDAD_ANILLO];
+    private long escritos;
+    private long consolidados;
+
+    // Agregados por minuto, indexados desde el minuto de origen
+    private long origenMinuto = -1;
+    private int ultimoMinuto = -1;
+    private long[] entradasAcum = new long[1440];
+    private long[] salidasAcum = new long[1440];
+    private long[] ocupacionAcum = new long[1440];
+    private int[] maximoMinuto = new int[1440];
+
+    // Histograma de estancias por hora (fila h = acumulado hasta la hora h)
+    private int ultimaHora = -1;
+    private long[] estanciasAcum = new long[24 * NUM_CUBOS];
+
+    // Matrícula codificada → segundo de entrada (desde el origen) de los vehículos dentro
+    private IndiceEnteros horasEntrada = new IndiceEnteros();
+    private int ocupacion;
+    private long ultimoInstante;
+
+    /**
+     * Empieza una serie nueva a partir de la ocupación actual. Los vehículos
+     * que ya estaban dentro no tienen hora de entrada, así que su salida no
+     * cuenta en el histograma de estancias.
+     * @param ocupacionInicial Vehículos en el parking
+     * @param instante Momento de inicio (milisegundos desde epoch)
+     */
+    public void iniciar(int ocupacionInicial, long instante) {
+        escritos = 0;
+        consolidados = 0;
+        empezarSerie(ocupacionInicial, instante);
+    }
+
+    // Pone a cero los agregados sin tocar el anillo
+    private void empezarSerie(int ocupacionInicial, long instante) {
+        horasEntrada = new IndiceEnteros();
+        ocupacion = ocupacionInicial;
+        ultimoInstante = instante;
+        origenMinuto = instante / MS_MINUTO;
+        ultimoMinuto = -1;
+        ultimaHora = -1;
+        avanzarHasta(0);
+    }
+
+    /**
+     * Anota la entrada de un vehículo.
+     * @param matricula Matrícula del vehículo
+     * @param instante Momento de la entrada (milisegundos desde epoch)
+     */
+    public void registrarEntrada(String matricula, long instante) {
+        registrar(ENTRADA, matricula, instante);
+    }
+
+    /**
+     * Anota la salida de un vehículo.
+     * @param matricula Matrícula del vehículo
+     * @param instante Momento de la salida (milisegundos desde epoch)
+     */
+    public void registrarSalida(String matricula, long instante) {
+        registrar(SALIDA, matricula, instante);
+    }
+
+    private void registrar(byte tipo, String matricula, long instante) {
+        if (escritos - consolidados == CAPACIDAD_ANILLO) {
+            consolidar();
+        }
+        int i = (int) (escritos & (CAPACIDAD_ANILLO - 1));
+        anilloInstantes[i] = instante;
+        anilloMatriculas[i] = Vehiculo.codificarMatricula(matricula);
+        anilloTipos[i] = tipo;
+        escritos++;
+    }
+
+    /**
+     * Vuelca en los agregados los eventos pendientes del anillo.
+     */
+    public void consolidar() {
+        if (origenMinuto < 0 && escritos > consolidados) {
+            empezarSerie(0, anilloInstantes[(int) (consolidados & (CAPACIDAD_ANILLO - 1))]);
+        }
+        while (consolidados < escritos) {
+            int i = (int) (consolidados & (CAPACIDAD_ANILLO - 1));
+            // Si el reloj retrocede, el evento se cuenta en el último instante conocido
+            long instante = Math.max(anilloInstantes[i], ultimoInstante);
+            ultimoInstante = instante;
+            int minuto = (int) (instante / MS_MINUTO - origenMinuto);
+            avanzarHasta(minuto);
+            int segundo = (int) ((instante - origenMinuto * MS_MINUTO) / 1000);
+            if (anilloTipos[i] == ENTRADA) {
+                ocupacion++;
+                entradasAcum[minuto]++;
+                ocupacionAcum[minuto]++;
+                if (anilloMatriculas[i] >= 0) {
+                    horasEntrada.poner(anilloMatriculas[i], segundo);
+                }
+            } else {
+                ocupacion--;
+                salidasAcum[minuto]++;
+                ocupacionAcum[minuto]--;
+                int entrada = anilloMatriculas[i] < 0 ? -1 : horasEntrada.quitar(anilloMatriculas[i]);
+                if (entrada >= 0) {
+                    estanciasAcum[ultimaHora * NUM_CUBOS + cubo(segundo - entrada)]++;
+                }
+            }
+            maximoMinuto[minuto] = Math.max(maximoMinuto[minuto], ocupacion);
+            consolidados++;
+        }
+    }
+
+    /**
+     * Obtiene la ocupación actual.
+     * @return Vehículos dentro del parking
+     */
+    public int getOcupacion() {
+        consolidar();
+        return ocupacion;
+    }
+
+    /**
+     * Cuenta las entradas en una ventana, con resolución de minuto.
+     * @param desde Inicio de la ventana (incluido, milisegundos desde epoch)
+     * @param hasta Fin de la ventana (excluido)
+     * @return Número de entradas
+     */
+    public long entradasEntre(long desde, long hasta) {
+        consolidar();
+        int[] ventana = minutos(desde, hasta);
+        return ventana == null ? 0 : acumulado(entradasAcum, ventana[1]) - acumulado(entradasAcum, ventana[0] - 1);
+    }
+
+    /**
+     * Cuenta las salidas en una ventana, con resolución de minuto.
+     * @param desde Inicio de la ventana (incluido, milisegundos desde epoch)
+     * @param hasta Fin de la ventana (excluido)
+     * @return Número de salidas
+     */
+    public long salidasEntre(long desde, long hasta) {
+        consolidar();
+        int[] ventana = minutos(desde, hasta);
+        return ventana == null ? 0 : acumulado(salidasAcum, ventana[1]) - acumulado(salidasAcum, ventana[0] - 1);
+    }
+
+    /**
+     * Calcula la ocupación media de una ventana (media de la ocupación al final de cada minuto).
+     * @param desde Inicio de la ventana (incluido, milisegundos desde epoch)
+     * @param hasta Fin de la ventana (excluido)
+     * @return Ocupación media, o 0 si la ventana queda fuera de la serie
+     */
+    public double ocupacionMedia(long desde, long hasta) {
+        consolidar();
+        int[] ventana = minutos(desde, hasta);
+        if (ventana == null) {
+            return 0;
+        }
+        long suma = ocupacionAcumulada(ventana[1]) - ocupacionAcumulada(ventana[0] - 1);
+        return (double) suma / (ventana[1] - ventana[0] + 1);
+    }
+
+    /**
+     * Calcula la ocupación máxima de una ventana. Recorre un valor por minuto
+     * de la ventana, nunca los eventos.
+     * @param desde Inicio de la ventana (incluido, milisegundos desde epoch)
+     * @param hasta Fin de la ventana (excluido)
+     * @return Ocupación máxima, o 0 si la ventana queda fuera de la serie
+     */
+    public int ocupacionMaxima(long desde, long hasta) {
+        consolidar();
+        int[] ventana = minutos(desde, hasta);
+        if (ventana == null) {
+            return 0;
+        }
+        int maximo = ventana[1] > ultimoMinuto ? ocupacion : 0;
+        for (int m = ventana[0]; m <= Math.min(ventana[1], ultimoMinuto); m++) {
+            maximo = Math.max(maximo, maximoMinuto[m]);
+        }
+        return maximo;
+    }
+
+    /**
+     * Histograma de las estancias de los vehículos que salieron en una
+     * ventana, con resolución de hora.
+     * @param desde Inicio de la ventana (incluido, milisegundos desde epoch)
+     * @param hasta Fin de la ventana (excluido)
+     * @return Array de NUM_CUBOS posiciones; ver limiteInferiorCubo()
+     */
+    public long[] histogramaEstancias(long desde, long hasta) {
+        consolidar();
+        long[] histograma = new long[NUM_CUBOS];
+        if (origenMinuto < 0 || hasta <= desde) {
+            return histograma;
+        }
+        long origenHora = origenMinuto / 60;
+        long primera = Math.max(0, desde / MS_HORA - origenHora);
+        long ultima = Math.min(ultimaHora, (hasta - 1) / MS_HORA - origenHora);
+        if (ultima < primera) {
+            return histograma;
+        }
+        for (int c = 0; c < NUM_CUBOS; c++) {
+            long antes = primera == 0 ? 0 : estanciasAcum[(int) (primera - 1) * NUM_CUBOS + c];
+            histograma[c] = estanciasAcum[(int) ultima * NUM_CUBOS + c] - antes;
+        }
+        return histograma;
+    }
+
+    /**
+     * Estancia mínima (en segundos) que cae en un cubo del histograma.
+     * @param cubo Posición del histograma
+     * @return 0 para el cubo 0 y 2^(cubo-1) para los demás
+     */
+    public static long limiteInferiorCubo(int cubo) {
+        return cubo == 0 ? 0 : 1L << (cubo - 1);
+    }
+
+    // Cubo logarítmico de una estancia en segundos
+    private static int cubo(int segundos) {
+        return Math.min(NUM_CUBOS - 1, 32 - Integer.numberOfLeadingZeros(Math.max(0, segundos)));
+    }
+
+    // Minutos [primero, último] de la serie que cubre la ventana, o null si no cubre ninguno
+    private int[] minutos(long desde, long hasta) {
+        if (origenMinuto < 0 || hasta <= desde) {
+            return null;
+        }
+        long primero = Math.max(0, desde / MS_MINUTO - origenMinuto);
+        long ultimo = (hasta - 1) / MS_MINUTO - origenMinuto;
+        if (ultimo < primero) {
+            return null;
+        }
+        return new int[]{(int) primero, (int) Math.min(ultimo, Integer.MAX_VALUE - 1)};
+    }
+
+    // Valor acumulado hasta el minuto indicado; pasado el último minuto ya no cambia
+    private long acumulado(long[] serie, int minuto) {
+        return minuto < 0 ? 0 : serie[Math.min(minuto, ultimoMinuto)];
+    }
+
+    // Suma de ocupaciones hasta el minuto indicado; pasado el último sigue la ocupación actual
+    private long ocupacionAcumulada(int minuto) {
+        if (minuto < 0) {
+            return 0;
+        }
+        if (minuto <= ultimoMinuto) {
+            return ocupacionAcum[minuto];
+        }
+        return ocupacionAcum[ultimoMinuto] + (long) (minuto - ultimoMinuto) * ocupacion;
+    }
+
+    // Abre los minutos (y horas) hasta el indicado, arrastrando los acumulados
+    private void avanzarHasta(int minuto) {
+        if (minuto >= entradasAcum.length) {
+            int capacidad = Math.max(minuto + 1, entradasAcum.length * 2);
+            entradasAcum = Arrays.copyOf(entradasAcum, capacidad);
+            salidasAcum = Arrays.copyOf(salidasAcum, capacidad);
+            ocupacionAcum = Arrays.copyOf(ocupacionAcum, capacidad);
+            maximoMinuto = Arrays.copyOf(maximoMinuto, capacidad);
+        }
+        while (ultimoMinuto < minuto) {
+            int m = ++ultimoMinuto;
+            entradasAcum[m] = m == 0 ? 0 : entradasAcum[m - 1];
+            salidasAcum[m] = m == 0 ? 0 : salidasAcum[m - 1];
+            ocupacionAcum[m] = (m == 0 ? 0 : ocupacionAcum[m - 1]) + ocupacion;
+            maximoMinuto[m] = ocupacion;
+        }
+        int hora = (int) ((origenMinuto + minuto) / 60 - origenMinuto / 60);
+        if ((hora + 1) * NUM_CUBOS > estanciasAcum.length) {
+            estanciasAcum = Arrays.copyOf(estanciasAcum, Math.max((hora + 1) * NUM_CUBOS, estanciasAcum.length * 2));
+        }
+        while (ultimaHora < hora) {
+            int h = ++ultimaHora;
+            if (h > 0) {
+                System.arraycopy(estanciasAcum, (h - 1) * NUM_CUBOS, estanciasAcum, h * NUM_CUBOS, NUM_CUBOS);
+            } else {
+                Arrays.fill(estanciasAcum, 0, NUM_CUBOS, 0);
+            }
+        }
+    }
+}
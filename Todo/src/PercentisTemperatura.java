@@ -0,0 +1,57 @@
+import java.util.Arrays;
+
+/**
+ * Resúmenes de percentiles por hora en un anillo (30 días), mantenidos con
+ * cada lectura como las resoluciones de AgregadosTemperatura. Los
+ * percentiles de un rango se calculan uniendo los resúmenes de las horas
+ * que lo cubren, así que el rango se redondea a horas completas.
+ */
+class PercentisTemperatura {
+    static final double COMPRESION = 100;
+
+    private final long duracion;
+    private final long[] cubos;                 // Hora guardada en cada posición (-1 = libre)
+    private final ResumoPercentis[] resumos;    // Se crean al recibir la primera lectura
+
+    public PercentisTemperatura(long duracion, int numCubos) {
+        this.duracion = duracion;
+        cubos = new long[numCubos];
+        Arrays.fill(cubos, -1);
+        resumos = new ResumoPercentis[numCubos];
+    }
+
+    public void engadir(long instante, float temperatura) {
+        long cubo = instante / duracion;
+        int p = (int) (cubo % cubos.length);
+        if (cubos[p] != cubo) {
+            if (cubo < cubos[p]) {
+                return; // Más antigua que lo que conserva el anillo
+            }
+            cubos[p] = cubo;
+            if (resumos[p] == null) {
+                resumos[p] = new ResumoPercentis(COMPRESION);
+            } else {
+                resumos[p].reiniciar();
+            }
+        }
+        resumos[p].engadir(temperatura);
+    }
+
+    /**
+     * Une los resúmenes de los intervalos que tocan el rango [desde, hasta)
+     * @param desde Inicio en milisegundos desde epoch
+     * @param hasta Fin (excluido) en milisegundos desde epoch
+     * @return Resumen nuevo con las lecturas conservadas del rango
+     */
+    public ResumoPercentis resumir(long desde, long hasta) {
+        ResumoPercentis rango = new ResumoPercentis(COMPRESION);
+        long ultimo = (hasta - 1) / duracion;
+        for (long cubo = Math.max(desde / duracion, ultimo - cubos.length + 1); cubo <= ultimo; cubo++) {
+            int p = (int) (cubo % cubos.length);
+            if (cubos[p] == cubo) {
+                rango.unir(resumos[p]);
+            }
+        }
+        return rango;
+    }
+}
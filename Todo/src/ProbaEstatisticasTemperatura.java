@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+/**
+ * Comprobación de EstatisticasTemperatura frente al cálculo con streams
+ * (DoubleSummaryStatistics para conta, mínima, máxima y media, y varianza
+ * de población en dos pasadas sobre la media, con la corrección de Chan,
+ * Golub y LeVeque para el error de redondeo de la propia media: sin ella,
+ * con lecturas alrededor de 1e9 la referencia fallaría en el octavo dígito).
+ * Para cada serie, aleatoria o adversa, las estadísticas acumuladas tienen
+ * que coincidir con la referencia con un error relativo de como mucho 1e-15.
+ * Uso: java ProbaEstatisticasTemperatura [lecturas]
+ */
+public class ProbaEstatisticasTemperatura {
+    private static final double TOLERANCIA = 1e-15;
+
+    public static void main(String[] args) {
+        int lecturas = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random azar = new Random(7);
+        List<String> nomes = new ArrayList<>();
+        List<double[]> series = new ArrayList<>();
+
+        engadir(nomes, series, "gaussiana 15±8 °C", xerar(lecturas, i -> 15 + 8 * azar.nextGaussian()));
+        engadir(nomes, series, "uniforme -40..50 °C en float",
+                xerar(lecturas, i -> (float) (-40 + 90 * azar.nextDouble())));
+        engadir(nomes, series, "unha soa lectura", new double[]{21.5});
+        engadir(nomes, series, "constante", xerar(lecturas, i -> 18.3));
+        engadir(nomes, series, "dous valores alternos", xerar(lecturas, i -> i % 2 == 0 ? -0.1 : 0.1));
+        engadir(nomes, series, "desprazamento grande (1e6 ± 1)",
+                xerar(lecturas, i -> 1e6 + azar.nextGaussian()));
+        engadir(nomes, series, "ordenada ascendente", ordenar(xerar(lecturas, i -> 15 + 8 * azar.nextGaussian())));
+        engadir(nomes, series, "ordenada descendente", inverter(ordenar(xerar(lecturas, i -> 15 + 8 * azar.nextGaussian()))));
+        engadir(nomes, series, "un pico entre valores pequenos",
+                xerar(lecturas, i -> i == lecturas / 2 ? 1e4 : 1e-3 * azar.nextDouble()));
+        engadir(nomes, series, "primeira lectura atípica",
+                xerar(lecturas, i -> i == 0 ? 1e4 : 15 + azar.nextGaussian()));
+        engadir(nomes, series, "desprazamento enorme (1e9 ± 1e-3)",
+                xerar(lecturas, i -> 1e9 + 1e-3 * azar.nextGaussian()));
+        engadir(nomes, series, "signos e magnitudes mesturados",
+                xerar(lecturas, i -> (azar.nextBoolean() ? 1 : -1) * Math.pow(10, azar.nextInt(9) - 4) * azar.nextDouble()));
+
+        int fallos = 0;
+        for (int s = 0; s < series.size(); s++) {
+            fallos += comprobar(nomes.get(s), series.get(s));
+        }
+        if (fallos > 0) {
+            System.out.println("❌ " + fallos + " valores fóra da tolerancia.");
+            System.exit(1);
+        }
+        System.out.println("✅ " + series.size() + " series coinciden co cálculo con streams (erro relativo ≤ " + TOLERANCIA + ").");
+    }
+
+    // Compara las estadísticas acumuladas lectura a lectura con las calculadas con streams
+    private static int comprobar(String nome, double[] serie) {
+        EstatisticasTemperatura estatisticas = new EstatisticasTemperatura();
+        for (double t : serie) {
+            estatisticas.engadir(t);
+        }
+        DoubleSummaryStatistics referencia = DoubleStream.of(serie).summaryStatistics();
+        double media = referencia.getAverage();
+        double desviacions = DoubleStream.of(serie).map(t -> t - media).sum();
+        double varianza = (DoubleStream.of(serie).map(t -> (t - media) * (t - media)).sum()
+                - desviacions * desviacions / serie.length) / serie.length;
+
+        int fallos = 0;
+        if (estatisticas.getConta() != referencia.getCount()) {
+            System.out.println("❌ " + nome + ": conta " + estatisticas.getConta() + " en vez de " + referencia.getCount());
+            fallos++;
+        }
+        fallos += comparar(nome, "mínima", estatisticas.getMinima(), referencia.getMin());
+        fallos += comparar(nome, "máxima", estatisticas.getMaxima(), referencia.getMax());
+        fallos += comparar(nome, "media", estatisticas.getMedia(), media);
+        fallos += comparar(nome, "varianza", estatisticas.getVarianza(), varianza);
+        return fallos;
+    }
+
+    private static int comparar(String nome, String valor, double obtido, double esperado) {
+        double erro = erroRelativo(obtido, esperado);
+        System.out.printf("%-40s %-9s %-24s erro relativo %.2e%n", nome, valor, obtido, erro);
+        if (erro <= TOLERANCIA) {
+            return 0;
+        }
+        System.out.println("❌ " + nome + ": " + valor + " " + obtido + " en vez de " + esperado);
+        return 1;
+    }
+
+    private static double erroRelativo(double obtido, double esperado) {
+        if (obtido == esperado) {
+            return 0;
+        }
+        return Math.abs(obtido - esperado) / Math.max(Math.abs(obtido), Math.abs(esperado));
+    }
+
+    private interface Xerador {
+        double valor(int i);
+    }
+
+    private static double[] xerar(int lecturas, Xerador xerador) {
+        double[] serie = new double[lecturas];
+        for (int i = 0; i < lecturas; i++) {
+            serie[i] = xerador.valor(i);
+        }
+        return serie;
+    }
+
+    private static double[] ordenar(double[] serie) {
+        Arrays.sort(serie);
+        return serie;
+    }
+
+    private static double[] inverter(double[] serie) {
+        for (int i = 0, j = serie.length - 1; i < j; i++, j--) {
+            double t = serie[i];
+            serie[i] = serie[j];
+            serie[j] = t;
+        }
+        return serie;
+    }
+
+    private static void engadir(List<String> nomes, List<double[]> series, String nome, double[] serie) {
+        nomes.add(nome);
+        series.add(serie);
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prueba de carga de la inxestión de sensores de EstacionMeteorologica.
+ * Arranca un hilo productor por sensor (64 por defecto) que entrega lecturas
+ * con InxestionSensores.ofrecer durante un tiempo, a todo lo que da o a un
+ * ritmo fijo por sensor, y muestra cada segundo las lecturas que el
+ * consumidor ha metido en la estación; al final, las lecturas por segundo
+ * sostenidas y las rechazadas por tener el buffer del sensor lleno.
+ *
+ * Si no se indica -Destacion.capacidade, la serie se limita a las últimas
+ * 2^22 lecturas para que la prueba no se quede sin memoria.
+ * Uso: java ProbaInxestion [sensores] [segundos] [lecturasPorSegundoPorSensor (0 = sin límite)]
+ */
+public class ProbaInxestion {
+    public static void main(String[] args) throws InterruptedException {
+        int sensores = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int ritmo = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        if (System.getProperty("estacion.capacidade") == null) {
+            System.setProperty("estacion.capacidade", Integer.toString(1 << 22));
+        }
+
+        InxestionSensores inxestion = EstacionMeteorologica.iniciarInxestion(sensores);
+        AtomicLong ofrecidas = new AtomicLong();
+        CountDownLatch saida = new CountDownLatch(1);
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        Thread[] produtores = new Thread[sensores];
+        for (int s = 0; s < sensores; s++) {
+            int sensor = s;
+            produtores[s] = new Thread(() -> producir(inxestion, sensor, ritmo, fin, saida, ofrecidas),
+                    "sensor-" + s);
+            produtores[s].start();
+        }
+
+        System.out.println("Inxestión con " + sensores + " sensores durante " + segundos + " s"
+                + (ritmo > 0 ? " a " + ritmo + " lecturas/s por sensor" : " sen límite de ritmo"));
+        long inicio = System.nanoTime();
+        saida.countDown();
+        long anteriores = 0;
+        for (int segundo = 1; segundo <= segundos; segundo++) {
+            LockSupport.parkNanos(inicio + segundo * 1_000_000_000L - System.nanoTime());
+            long inxeridas = inxestion.getInxeridas();
+            System.out.printf("%3d s: %,d lecturas/s inxeridas, %,d rexeitadas ata agora%n",
+                    segundo, inxeridas - anteriores, inxestion.getRexeitadas());
+            anteriores = inxeridas;
+        }
+        for (Thread produtor : produtores) {
+            produtor.join();
+        }
+        // deter() entrega antes todo lo que queda en los buffers
+        inxestion.deter();
+        double duracion = (System.nanoTime() - inicio) / 1e9;
+
+        long total = ofrecidas.get();
+        long rexeitadas = inxestion.getRexeitadas();
+        System.out.printf("Ofrecidas: %,d (%,.0f lecturas/s)%n", total, total / duracion);
+        System.out.printf("Inxeridas: %,d (%,.0f lecturas/s sostidas)%n",
+                inxestion.getInxeridas(), inxestion.getInxeridas() / duracion);
+        System.out.printf("Rexeitadas por buffer cheo: %,d (%.2f %%)%n",
+                rexeitadas, total == 0 ? 0 : 100.0 * rexeitadas / total);
+        if (inxestion.getInxeridas() + rexeitadas != total) {
+            System.out.println("❌ Ofrecidas " + total + " != inxeridas + rexeitadas");
+            System.exit(1);
+        }
+    }
+
+    // Un solo hilo por sensor, como exige BufferSensor. Con ritmo > 0 espera
+    // hasta el instante que toca a cada lectura en lugar de ir lo más rápido posible
+    private static void producir(InxestionSensores inxestion, int sensor, int ritmo, long fin,
+                                 CountDownLatch saida, AtomicLong ofrecidas) {
+        try {
+            saida.await();
+        } catch (InterruptedException e) {
+            return;
+        }
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        long intervalo = ritmo > 0 ? 1_000_000_000L / ritmo : 0;
+        long inicio = System.nanoTime();
+        long instante = System.currentTimeMillis();
+        long n = 0;
+        long ahora;
+        while ((ahora = System.nanoTime()) < fin) {
+            if (intervalo > 0 && inicio + n * intervalo > ahora) {
+                LockSupport.parkNanos(inicio + n * intervalo - ahora);
+                continue;
+            }
+            float temperatura = (float) (15 + azar.nextGaussian());
+            inxestion.ofrecer(sensor, instante + n, temperatura);
+            n++;
+        }
+        ofrecidas.addAndGet(n);
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Prueba de carga de GestorParkingConcurrente.
+ * Varios hilos dan de alta, de baja y cambian la velocidad de un mismo
+ * conjunto de matrículas; al terminar se comprueba que el mapa, los índices
+ * de marca y año, y lo que se recupera del disco (instantánea + diario)
+ * coinciden. Después mide las operaciones por segundo con 1 a 32 hilos.
+ *
+ * El gestor usa vehiculos.dat y vehiculos.log del directorio actual, así que
+ * hay que lanzarla en un directorio vacío (se niega si ya existen) y los
+ * borra al terminar.
+ * Uso: java PruebaGestorConcurrente [hilos] [operacionesPorHilo]
+ */
+public class PruebaGestorConcurrente {
+    private static final File[] FICHEROS = {
+        new File("vehiculos.dat"), new File("vehiculos.dat.tmp"), new File("vehiculos.log")
+    };
+    // Pocas matrículas para que los hilos choquen a menudo en las mismas
+    private static final int MATRICULAS = 2000;
+    // Marcas con distintas mayúsculas (el índice no las distingue) y sin marca
+    private static final String[] MARCAS = {"Seat", "SEAT", "seat ", "Ford", "Renault", "Kia", null};
+    private static final int[] HILOS_RENDIMIENTO = {1, 2, 4, 8, 16, 32};
+    private static final int OPERACIONES_RENDIMIENTO = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operacionesPorHilo = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        for (File f : FICHEROS) {
+            if (f.exists()) {
+                System.out.println("❌ Ya existe " + f + ": lanza la prueba en un directorio vacío.");
+                System.exit(1);
+            }
+        }
+        try {
+            List<String> errores = comprobarCarga(hilos, operacionesPorHilo);
+            if (!errores.isEmpty()) {
+                errores.stream().limit(20).forEach(e -> System.out.println("❌ " + e));
+                System.out.println("❌ " + errores.size() + " diferencias.");
+                System.exit(1);
+            }
+            for (int n : HILOS_RENDIMIENTO) {
+                borrarFicheros();
+                medirRendimiento(n);
+            }
+        } finally {
+            borrarFicheros();
+        }
+    }
+
+    // Fase 1: operaciones mezcladas y comprobación de coherencia
+    private static List<String> comprobarCarga(int hilos, int operacionesPorHilo) throws Exception {
+        GestorParkingConcurrente gestor = new GestorParkingConcurrente();
+        long inicio = System.nanoTime();
+        lanzar(gestor, hilos, operacionesPorHilo);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("Carga: %d hilos x %d operaciones en %.2f s, %d vehículos al final%n",
+                hilos, operacionesPorHilo, segundos, gestor.getVehiculos().size());
+
+        List<String> errores = new ArrayList<>();
+        comprobarIndices(gestor, errores);
+        // Otro gestor sobre los mismos ficheros reproduce la instantánea y el diario
+        GestorParkingConcurrente recuperado = new GestorParkingConcurrente();
+        compararMapas(gestor.getVehiculos(), recuperado.getVehiculos(), errores);
+        comprobarIndices(recuperado, errores);
+        if (errores.isEmpty()) {
+            System.out.println("✅ Mapa, índices y diario coinciden.");
+        }
+        return errores;
+    }
+
+    // Fase 2: operaciones por segundo con un número de hilos
+    private static void medirRendimiento(int hilos) throws Exception {
+        GestorParkingConcurrente gestor = new GestorParkingConcurrente();
+        int porHilo = OPERACIONES_RENDIMIENTO / hilos;
+        long inicio = System.nanoTime();
+        lanzar(gestor, hilos, porHilo);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("%2d hilos: %,.0f operaciones/s%n", hilos, porHilo * hilos / segundos);
+    }
+
+    // Arranca los hilos a la vez y espera a que terminen
+    private static void lanzar(GestorParkingConcurrente gestor, int hilos, int operacionesPorHilo)
+            throws InterruptedException {
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> lanzados = new ArrayList<>();
+        List<Throwable> fallos = Collections.synchronizedList(new ArrayList<>());
+        for (int h = 0; h < hilos; h++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    salida.await();
+                    for (int i = 0; i < operacionesPorHilo; i++) {
+                        operacionAleatoria(gestor);
+                    }
+                } catch (Throwable t) {
+                    fallos.add(t);
+                }
+            });
+            hilo.start();
+            lanzados.add(hilo);
+        }
+        salida.countDown();
+        for (Thread hilo : lanzados) {
+            hilo.join();
+        }
+        if (!fallos.isEmpty()) {
+            throw new IllegalStateException("Fallo inesperado en un hilo", fallos.get(0));
+        }
+    }
+
+    // Alta, baja o cambio de velocidad sobre una matrícula al azar. Que ya exista,
+    // no exista o la velocidad se salga del rango es lo normal con tanta colisión
+    private static void operacionAleatoria(GestorParkingConcurrente gestor) throws Exception {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        String matricula = String.format("%04dABC", azar.nextInt(MATRICULAS));
+        try {
+            switch (azar.nextInt(4)) {
+                case 0:
+                    gestor.anadirVehiculo(new Vehiculo(matricula, MARCAS[azar.nextInt(MARCAS.length)],
+                            "Modelo", 1990 + azar.nextInt(35), azar.nextInt(201)));
+                    break;
+                case 1:
+                    gestor.eliminarVehiculo(matricula);
+                    break;
+                case 2:
+                    gestor.aumentarVelocidad(matricula, azar.nextInt(1, 40));
+                    break;
+                default:
+                    gestor.disminuirVelocidad(matricula, azar.nextInt(1, 40));
+                    break;
+            }
+        } catch (Vehiculo.VehiculoYaExisteException | Vehiculo.VehiculoNoEncontradoException
+                 | Vehiculo.VelocidadNoValidaException e) {
+            // Resultado esperado de una colisión
+        }
+    }
+
+    // Cada vehículo aparece en su marca y su año, y los índices no devuelven nada más
+    private static void comprobarIndices(GestorParkingConcurrente gestor, List<String> errores) {
+        Map<String, Vehiculo> vehiculos = gestor.getVehiculos();
+        Set<String> marcas = new HashSet<>();
+        for (String marca : MARCAS) {
+            marcas.add(marca == null ? "" : marca.trim().toLowerCase(Locale.ROOT));
+        }
+        int porMarca = 0;
+        for (String marca : marcas) {
+            for (Vehiculo v : gestor.buscarPorMarca(marca)) {
+                String suya = v.getMarca() == null ? "" : v.getMarca().trim().toLowerCase(Locale.ROOT);
+                if (!suya.equals(marca)) {
+                    errores.add("El índice de marca '" + marca + "' devuelve " + v.getMatricula() + " (" + v.getMarca() + ")");
+                }
+                porMarca++;
+            }
+        }
+        if (porMarca != vehiculos.size()) {
+            errores.add("El índice de marca tiene " + porMarca + " vehículos y el mapa " + vehiculos.size());
+        }
+        List<Vehiculo> porAnio = gestor.buscarPorAnios(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (porAnio.size() != vehiculos.size()) {
+            errores.add("El índice de años tiene " + porAnio.size() + " vehículos y el mapa " + vehiculos.size());
+        }
+        for (Vehiculo v : vehiculos.values()) {
+            if (!gestor.buscarPorMarca(v.getMarca()).contains(v)) {
+                errores.add(v.getMatricula() + " no está en el índice de su marca");
+            }
+            if (!gestor.buscarPorAnios(v.getAñoFabricacion(), v.getAñoFabricacion()).contains(v)) {
+                errores.add(v.getMatricula() + " no está en el índice de su año");
+            }
+        }
+    }
+
+    private static void compararMapas(Map<String, Vehiculo> memoria, Map<String, Vehiculo> disco,
+                                      List<String> errores) {
+        if (memoria.size() != disco.size()) {
+            errores.add("En memoria hay " + memoria.size() + " vehículos y se recuperan " + disco.size());
+        }
+        for (Vehiculo v : memoria.values()) {
+            Vehiculo r = disco.get(v.getMatricula());
+            if (r == null) {
+                errores.add(v.getMatricula() + " no se recupera del disco");
+            } else if (!Objects.equals(v.getMarca(), r.getMarca()) || !Objects.equals(v.getModelo(), r.getModelo())
+                    || v.getAñoFabricacion() != r.getAñoFabricacion()
+                    || v.getVelocidadActual() != r.getVelocidadActual()) {
+                errores.add(v.getMatricula() + " se recupera con otros datos: velocidad "
+                        + r.getVelocidadActual() + " en lugar de " + v.getVelocidadActual());
+            }
+        }
+    }
+
+    private static void borrarFicheros() {
+        for (File f : FICHEROS) {
+            f.delete();
+        }
+    }
+}
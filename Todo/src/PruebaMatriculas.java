@@ -0,0 +1,138 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Comprobación de Vehiculo.esMatriculaValida frente a la expresión regular
+ * que usaba antes (\d{4}[A-Z]{3}).
+ * Primero verifica que las dos versiones (y la que trabaja sobre bytes) dan
+ * la misma respuesta para un conjunto de matrículas generadas; después mide
+ * el tiempo de cada una sobre ese mismo conjunto.
+ * Uso: java PruebaMatriculas [aleatorias] [rondas]
+ */
+public class PruebaMatriculas {
+    private static final Pattern PATRON = Pattern.compile("\\d{4}[A-Z]{3}");
+
+    // Caracteres en los bordes de cada rango, más algunos que no son ASCII
+    // (un dígito árabe, que \d no acepta sin UNICODE_CHARACTER_CLASS)
+    private static final char[] CARACTERES = {
+        '0', '5', '9', '/', ':', 'A', 'M', 'Z', '@', '[', 'a', 'z', ' ', '٣', 'Ñ'
+    };
+
+    public static void main(String[] args) {
+        int aleatorias = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rondas = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<String> matriculas = generar(aleatorias, new Random(42));
+
+        int validas = 0;
+        for (String m : matriculas) {
+            boolean esperado = PATRON.matcher(m).matches();
+            byte[] bytes = m.getBytes(StandardCharsets.UTF_8);
+            if (Vehiculo.esMatriculaValida(m) != esperado
+                    || Vehiculo.esMatriculaValida(bytes, 0, bytes.length) != esperado) {
+                System.out.println("❌ Resultado distinto para \"" + m + "\": la expresión regular dice " + esperado);
+                System.exit(1);
+            }
+            if (esperado) {
+                validas++;
+            }
+        }
+        System.out.println("✅ " + matriculas.size() + " matrículas comprobadas (" + validas
+                + " válidas), mismo resultado en las tres versiones.");
+
+        String[] datos = matriculas.toArray(new String[0]);
+        for (int r = 1; r <= rondas; r++) {
+            long t0 = System.nanoTime();
+            int conRegex = contarConString(datos);
+            long t1 = System.nanoTime();
+            int conPatron = contarConPatron(datos);
+            long t2 = System.nanoTime();
+            int aMano = contarAMano(datos);
+            long t3 = System.nanoTime();
+            if (conRegex != aMano || conPatron != aMano) {
+                System.out.println("❌ Recuentos distintos: " + conRegex + " / " + conPatron + " / " + aMano);
+                System.exit(1);
+            }
+            System.out.printf("Ronda %d: String.matches %.1f ns, Pattern precompilado %.1f ns, a mano %.1f ns por matrícula%n",
+                    r, nsPorMatricula(t1 - t0, datos.length), nsPorMatricula(t2 - t1, datos.length),
+                    nsPorMatricula(t3 - t2, datos.length));
+        }
+    }
+
+    // Matrículas válidas, todas las variaciones de uno y dos caracteres de una
+    // válida, longitudes vecinas y textos aleatorios con los caracteres de borde
+    private static List<String> generar(int aleatorias, Random azar) {
+        List<String> matriculas = new ArrayList<>();
+        String base = "1234ABC";
+        matriculas.add("");
+        matriculas.add(base);
+        matriculas.add("0000AAA");
+        matriculas.add("9999ZZZ");
+        matriculas.add(base.substring(0, 6));
+        matriculas.add(base + "D");
+        matriculas.add(" " + base);
+        for (int i = 0; i < base.length(); i++) {
+            for (char c : CARACTERES) {
+                char[] una = base.toCharArray();
+                una[i] = c;
+                matriculas.add(new String(una));
+                for (int j = i + 1; j < base.length(); j++) {
+                    for (char d : CARACTERES) {
+                        char[] dos = una.clone();
+                        dos[j] = d;
+                        matriculas.add(new String(dos));
+                    }
+                }
+            }
+        }
+        for (int n = 0; n < aleatorias; n++) {
+            // La mayoría de 7 caracteres, que es donde las dos versiones pueden discrepar
+            int longitud = azar.nextInt(4) == 0 ? azar.nextInt(10) : 7;
+            char[] texto = new char[longitud];
+            for (int i = 0; i < longitud; i++) {
+                texto[i] = azar.nextBoolean()
+                        ? CARACTERES[azar.nextInt(CARACTERES.length)]
+                        : (char) (i < 4 ? '0' + azar.nextInt(10) : 'A' + azar.nextInt(26));
+            }
+            matriculas.add(new String(texto));
+        }
+        return matriculas;
+    }
+
+    // Lo que hacía setMatricula antes: compila la expresión en cada llamada
+    private static int contarConString(String[] datos) {
+        int validas = 0;
+        for (String m : datos) {
+            if (m.matches("\\d{4}[A-Z]{3}")) {
+                validas++;
+            }
+        }
+        return validas;
+    }
+
+    private static int contarConPatron(String[] datos) {
+        int validas = 0;
+        for (String m : datos) {
+            if (PATRON.matcher(m).matches()) {
+                validas++;
+            }
+        }
+        return validas;
+    }
+
+    private static int contarAMano(String[] datos) {
+        int validas = 0;
+        for (String m : datos) {
+            if (Vehiculo.esMatriculaValida(m)) {
+                validas++;
+            }
+        }
+        return validas;
+    }
+
+    private static double nsPorMatricula(long nanos, int matriculas) {
+        return (double) nanos / matriculas;
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * Agregados de temperatura a una resolución fija (p. ej. 1 minuto) en un
+ * anillo de cubos: cada cubo guarda conta, suma, mínima y máxima de las
+ * lecturas de su intervalo. Solo se conservan los últimos numCubos
+ * intervalos; las lecturas más antiguas que eso se ignoran.
+ */
+class ResolucionTemperatura {
+    private final long duracion;     // Milisegundos de cada cubo
+    private final long[] cubos;      // Número de intervalo guardado en cada posición (-1 = libre)
+    private final long[] conta;
+    private final double[] suma;
+    private final float[] minima;
+    private final float[] maxima;
+
+    /**
+     * Constructor de la resolución
+     * @param duracion Milisegundos que abarca cada cubo
+     * @param numCubos Cubos que se conservan
+     */
+    public ResolucionTemperatura(long duracion, int numCubos) {
+        this.duracion = duracion;
+        cubos = new long[numCubos];
+        Arrays.fill(cubos, -1);
+        conta = new long[numCubos];
+        suma = new double[numCubos];
+        minima = new float[numCubos];
+        maxima = new float[numCubos];
+    }
+
+    /**
+     * Suma una lectura a su cubo, reutilizando la posición de un intervalo caducado
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     * @param temperatura Temperatura en °C
+     */
+    public void engadir(long instante, float temperatura) {
+        long cubo = instante / duracion;
+        int p = (int) (cubo % cubos.length);
+        if (cubos[p] != cubo) {
+            if (cubo < cubos[p]) {
+                return; // Más antigua que lo que conserva el anillo
+            }
+            cubos[p] = cubo;
+            conta[p] = 0;
+            suma[p] = 0;
+            minima[p] = Float.POSITIVE_INFINITY;
+            maxima[p] = Float.NEGATIVE_INFINITY;
+        }
+        conta[p]++;
+        suma[p] += temperatura;
+        minima[p] = Math.min(minima[p], temperatura);
+        maxima[p] = Math.max(maxima[p], temperatura);
+    }
+
+    public long getDuracion() {
+        return duracion;
+    }
+
+    public int getNumCubos() {
+        return cubos.length;
+    }
+
+    /**
+     * Lecturas de un intervalo
+     * @param cubo Número de intervalo (instante / duración)
+     * @return Lecturas del intervalo, o 0 si no hay o ya no se conserva
+     */
+    public long getConta(long cubo) {
+        int p = (int) (cubo % cubos.length);
+        return cubos[p] == cubo ? conta[p] : 0;
+    }
+
+    public double getMedia(long cubo) {
+        int p = (int) (cubo % cubos.length);
+        return suma[p] / conta[p];
+    }
+
+    public float getMinima(long cubo) {
+        return minima[(int) (cubo % cubos.length)];
+    }
+
+    public float getMaxima(long cubo) {
+        return maxima[(int) (cubo % cubos.length)];
+    }
+}
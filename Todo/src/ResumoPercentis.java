@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+/**
+ * Resumen aproximado de cuantiles (t-digest con fusión): las lecturas se
+ * agrupan en centroides (media y peso) ordenados, pequeños en los extremos
+ * y grandes en el centro, de modo que p1 o p99 se estiman con mucha más
+ * precisión que con un histograma fijo y en poco espacio. Dos resúmenes
+ * se pueden unir, así que un rango de tiempo se consulta uniendo los
+ * resúmenes de sus intervalos en vez de ordenar las lecturas.
+ *
+ * Las lecturas nuevas se acumulan en un buffer y se funden con los
+ * centroides al llenarse o al consultar.
+ */
+class ResumoPercentis {
+    private final double compresion;    // Límite aproximado de centroides
+    private double[] medias;
+    private double[] pesos;
+    private int numCentroides;
+    private final double[] pendentes;   // Lecturas aún sin fundir
+    private int numPendentes;
+    private double pesoTotal;           // Incluye las pendientes
+    private float minima = Float.POSITIVE_INFINITY;
+    private float maxima = Float.NEGATIVE_INFINITY;
+
+    /**
+     * Constructor del resumen
+     * @param compresion Mayor valor = más centroides y más precisión (100 es razonable)
+     */
+    public ResumoPercentis(double compresion) {
+        this.compresion = compresion;
+        medias = new double[(int) compresion + 1];
+        pesos = new double[medias.length];
+        pendentes = new double[4 * ((int) compresion + 1)];
+    }
+
+    public void engadir(float temperatura) {
+        if (numPendentes == pendentes.length) {
+            comprimir();
+        }
+        pendentes[numPendentes++] = temperatura;
+        pesoTotal++;
+        minima = Math.min(minima, temperatura);
+        maxima = Math.max(maxima, temperatura);
+    }
+
+    /**
+     * Suma a este resumen las lecturas de otro (que también queda comprimido)
+     * @param outro Resumen a unir
+     */
+    public void unir(ResumoPercentis outro) {
+        if (outro.pesoTotal == 0) {
+            return;
+        }
+        comprimir();
+        outro.comprimir();
+        fundir(outro.medias, outro.pesos, outro.numCentroides);
+        pesoTotal += outro.pesoTotal;
+        minima = Math.min(minima, outro.minima);
+        maxima = Math.max(maxima, outro.maxima);
+    }
+
+    /**
+     * Valor aproximado por debajo del cual queda la fracción q de las lecturas
+     * @param q Fracción entre 0 y 1 (0.95 = percentil 95)
+     * @return Temperatura estimada, o NaN si no hay lecturas
+     */
+    public double cuantil(double q) {
+        comprimir();
+        if (numCentroides == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return minima;
+        }
+        if (q >= 1) {
+            return maxima;
+        }
+        // Cada centroide se sitúa en el centro de su peso acumulado y se interpola entre vecinos
+        double objetivo = q * pesoTotal;
+        double anteriorPosicion = 0;
+        double anteriorValor = minima;
+        double acumulado = 0;
+        for (int i = 0; i < numCentroides; i++) {
+            double posicion = acumulado + pesos[i] / 2;
+            if (objetivo < posicion) {
+                return interpolar(anteriorPosicion, anteriorValor, posicion, medias[i], objetivo);
+            }
+            anteriorPosicion = posicion;
+            anteriorValor = medias[i];
+            acumulado += pesos[i];
+        }
+        return interpolar(anteriorPosicion, anteriorValor, pesoTotal, maxima, objetivo);
+    }
+
+    public long getConta() {
+        return (long) pesoTotal;
+    }
+
+    public void reiniciar() {
+        numCentroides = 0;
+        numPendentes = 0;
+        pesoTotal = 0;
+        minima = Float.POSITIVE_INFINITY;
+        maxima = Float.NEGATIVE_INFINITY;
+    }
+
+    // Funde las lecturas pendientes con los centroides
+    private void comprimir() {
+        if (numPendentes == 0) {
+            return;
+        }
+        Arrays.sort(pendentes, 0, numPendentes);
+        int n = numPendentes;
+        numPendentes = 0;
+        fundir(pendentes, null, n);
+    }
+
+    /**
+     * Recorre en orden los centroides actuales y los nuevos (pesos null = peso 1)
+     * y va juntando vecinos mientras el centroide no supere el tamaño
+     * permitido en su posición: 4·peso·q·(1-q)/compresión, con q el cuantil
+     * de su centro, que es el límite del t-digest original y no necesita
+     * funciones trigonométricas.
+     */
+    private void fundir(double[] novasMedias, double[] novosPesos, int novos) {
+        int total = numCentroides + novos;
+        double[] mediasFundidas = new double[Math.max(total, medias.length)];
+        double[] pesosFundidos = new double[mediasFundidas.length];
+        double peso = 0;
+        for (int i = 0; i < numCentroides; i++) {
+            peso += pesos[i];
+        }
+        for (int j = 0; j < novos; j++) {
+            peso += novosPesos == null ? 1 : novosPesos[j];
+        }
+        int i = 0;
+        int j = 0;
+        int fundidos = 0;
+        double previo = 0;  // Peso de los centroides ya cerrados
+        while (i < numCentroides || j < novos) {
+            double m;
+            double w;
+            if (j >= novos || (i < numCentroides && medias[i] <= novasMedias[j])) {
+                m = medias[i];
+                w = pesos[i++];
+            } else {
+                m = novasMedias[j];
+                w = novosPesos == null ? 1 : novosPesos[j];
+                j++;
+            }
+            double actual = fundidos > 0 ? pesosFundidos[fundidos - 1] + w : 0;
+            if (fundidos > 0 && actual <= pesoMaximo(previo + actual / 2, peso)) {
+                mediasFundidas[fundidos - 1] += (m - mediasFundidas[fundidos - 1]) * w / actual;
+                pesosFundidos[fundidos - 1] = actual;
+            } else {
+                if (fundidos > 0) {
+                    previo += pesosFundidos[fundidos - 1];
+                }
+                mediasFundidas[fundidos] = m;
+                pesosFundidos[fundidos++] = w;
+            }
+        }
+        medias = mediasFundidas;
+        pesos = pesosFundidos;
+        numCentroides = fundidos;
+    }
+
+    // Peso máximo de un centroide cuyo centro queda en la posición "centro"
+    private double pesoMaximo(double centro, double peso) {
+        double q = centro / peso;
+        return 4 * peso * q * (1 - q) / compresion;
+    }
+
+    private static double interpolar(double x0, double y0, double x1, double y1, double x) {
+        return x1 == x0 ? y1 : y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+    }
+}
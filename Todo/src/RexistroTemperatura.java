@@ -0,0 +1,90 @@
+import java.io.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Clase que representa un registro de temperatura con su fecha/hora.
+ * La fecha se guarda como milisegundos desde epoch; en la serialización
+ * se sigue escribiendo el LocalDateTime de antes para que los ficheros
+ * antiguos se lean igual.
+ */
+class RexistroTemperatura implements Serializable {
+    // Versión de serialización para control de compatibilidad
+    private static final long serialVersionUID = 1L;
+
+    // Campos que se serializan: los mismos que tenía la clase con LocalDateTime
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("temperatura", double.class),
+            new ObjectStreamField("dataHora", LocalDateTime.class)
+    };
+
+    // Cada hilo usa su propio formateador, que guarda el día del último registro
+    private static final ThreadLocal<FormatoLecturas> FORMATO =
+            ThreadLocal.withInitial(() -> new FormatoLecturas(ZoneId.systemDefault()));
+
+    // Campos privados para encapsular los datos del registro
+    private double temperatura;      // Valor de la temperatura registrada
+    private long instante;           // Fecha y hora en milisegundos desde epoch
+
+    /**
+     * Constructor de la clase RexistroTemperatura
+     * @param temperatura Valor de la temperatura
+     * @param dataHora Fecha y hora del registro (en la zona del sistema)
+     */
+    public RexistroTemperatura(double temperatura, LocalDateTime dataHora) {
+        this(temperatura, dataHora.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Constructor a partir de milisegundos, sin crear objetos de fecha
+     * @param temperatura Valor de la temperatura
+     * @param instante Fecha y hora en milisegundos desde epoch
+     */
+    public RexistroTemperatura(double temperatura, long instante) {
+        this.temperatura = temperatura;
+        this.instante = instante;
+    }
+
+    // Métodos getters para acceder a los campos privados
+
+    public double getTemperatura() {
+        return temperatura;
+    }
+
+    public long getInstante() {
+        return instante;
+    }
+
+    public LocalDateTime getDataHora() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(instante), ZoneId.systemDefault());
+    }
+
+    /**
+     * Representación en String del registro
+     * @return String formateada con los datos del registro
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(48);
+        FORMATO.get().engadirRexistro(texto, temperatura, instante);
+        return texto.toString();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campos = out.putFields();
+        campos.put("temperatura", temperatura);
+        campos.put("dataHora", getDataHora());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        LocalDateTime dataHora = (LocalDateTime) campos.get("dataHora", null);
+        if (dataHora == null) {
+            throw new InvalidObjectException("Rexistro sen data");
+        }
+        temperatura = campos.get("temperatura", 0.0);
+        instante = dataHora.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
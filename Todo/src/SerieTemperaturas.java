@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/**
+ * Almacén de lecturas por columnas: instantes (milisegundos desde epoch) y
+ * temperaturas en arrays primitivos paralelos, en bloques de 4096 muestras.
+ * Cada muestra ocupa 12 bytes (un día a 1 Hz, ~1 MB) frente a los más de
+ * 80 de un RexistroTemperatura con su LocalDateTime, y engadir() solo reserva
+ * memoria al empezar un bloque nuevo.
+ *
+ * Con capacidade > 0 funciona como anillo: al llenarse, cada muestra nueva
+ * sobrescribe la más antigua y la memoria queda acotada.
+ */
+class SerieTemperaturas {
+    // Muestras por bloque (potencia de 2 para calcular posiciones con desplazamientos)
+    static final int TAMANO_BLOQUE = 4096;
+    private static final int BITS_BLOQUE = 12;
+    private static final int MASCARA_BLOQUE = TAMANO_BLOQUE - 1;
+
+    private long[][] instantes = new long[16][];     // Bloques de instantes
+    private float[][] temperaturas = new float[16][]; // Bloques de temperaturas
+    private final int capacidade;  // Máximo de muestras en modo anillo (0 = sin límite)
+    private long engadidas;        // Muestras añadidas desde el principio
+    private int tamano;            // Muestras guardadas ahora
+
+    /**
+     * Constructor de la serie
+     * @param capacidade Máximo de muestras que se conservan (0 = sin límite);
+     *                   se redondea a un múltiplo del tamaño de bloque
+     */
+    public SerieTemperaturas(int capacidade) {
+        if (capacidade < 0) {
+            throw new IllegalArgumentException("A capacidade non pode ser negativa");
+        }
+        this.capacidade = (capacidade + MASCARA_BLOQUE) & ~MASCARA_BLOQUE;
+    }
+
+    /**
+     * Añade una muestra al final de la serie
+     * @param instante Momento de la lectura en milisegundos desde epoch
+     * @param temperatura Temperatura en °C
+     */
+    public void engadir(long instante, float temperatura) {
+        int posicion = posicion(engadidas);
+        int bloque = posicion >>> BITS_BLOQUE;
+        if (bloque == instantes.length) {
+            instantes = Arrays.copyOf(instantes, bloque * 2);
+            temperaturas = Arrays.copyOf(temperaturas, bloque * 2);
+        }
+        if (instantes[bloque] == null) {
+            instantes[bloque] = new long[TAMANO_BLOQUE];
+            temperaturas[bloque] = new float[TAMANO_BLOQUE];
+        }
+        instantes[bloque][posicion & MASCARA_BLOQUE] = instante;
+        temperaturas[bloque][posicion & MASCARA_BLOQUE] = temperatura;
+        engadidas++;
+        if (capacidade == 0 || tamano < capacidade) {
+            tamano++;
+        }
+    }
+
+    /**
+     * Instante de una muestra
+     * @param i Posición desde la muestra más antigua (0 .. tamano()-1)
+     * @return Milisegundos desde epoch
+     */
+    public long getInstante(int i) {
+        int posicion = posicionDe(i);
+        return instantes[posicion >>> BITS_BLOQUE][posicion & MASCARA_BLOQUE];
+    }
+
+    /**
+     * Temperatura de una muestra
+     * @param i Posición desde la muestra más antigua (0 .. tamano()-1)
+     * @return Temperatura en °C
+     */
+    public float getTemperatura(int i) {
+        int posicion = posicionDe(i);
+        return temperaturas[posicion >>> BITS_BLOQUE][posicion & MASCARA_BLOQUE];
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public boolean estaBaleira() {
+        return tamano == 0;
+    }
+
+    /**
+     * Muestras que el anillo ya ha sobrescrito
+     * @return Número de muestras descartadas
+     */
+    public long getDescartadas() {
+        return engadidas - tamano;
+    }
+
+    /**
+     * Muestras añadidas desde el principio (incluidas las sobrescritas)
+     * @return Número total de muestras añadidas
+     */
+    public long getEngadidas() {
+        return engadidas;
+    }
+
+    /**
+     * Vacía la serie conservando los bloques ya reservados
+     */
+    public void baleirar() {
+        engadidas = 0;
+        tamano = 0;
+    }
+
+    // Posición física de la muestra lógica i
+    private int posicionDe(int i) {
+        if (i < 0 || i >= tamano) {
+            throw new IndexOutOfBoundsException("Mostra " + i + " de " + tamano);
+        }
+        return posicion(engadidas - tamano + i);
+    }
+
+    // Posición física de la muestra número n desde el principio
+    private int posicion(long n) {
+        return (int) (capacidade == 0 ? n : n % capacidade);
+    }
+}
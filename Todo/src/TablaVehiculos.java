@@ -0,0 +1,231 @@
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Almacén de vehículos indexado por la matrícula codificada en un int
+ * (ver Vehiculo.codificarMatricula), con direccionamiento abierto y sondeo lineal.
+ *
+ * Un HashMap guarda cada vehículo en un HashMap.Node (unos 32 bytes con
+ * punteros comprimidos) más su hueco en la tabla, unos 37 bytes por vehículo
+ * además del propio Vehiculo. Aquí cada hueco son dos arrays paralelos
+ * (int de clave + referencia al vehículo, 8 bytes) y la tabla se mantiene
+ * entre un 35% y un 70% de ocupación, así que el índice cuesta entre
+ * 11 y 23 bytes por vehículo y no se calcula el hash de ningún String.
+ *
+ * Se puede usar donde se espere un Map: la clave String se traduce a su
+ * código en cada consulta y, al recorrerlo, se devuelve la matrícula que ya
+ * guarda cada Vehiculo.
+ */
+public class TablaVehiculos extends AbstractMap<String, Vehiculo> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Marca de hueco libre (los códigos válidos nunca son negativos)
+    private static final int LIBRE = -1;
+    // Ocupación máxima antes de duplicar la tabla
+    private static final float CARGA_MAXIMA = 0.7f;
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private int[] claves;          // Matrícula codificada de cada hueco
+    private Vehiculo[] valores;    // Vehículo de cada hueco
+    private int numVehiculos;      // Huecos ocupados
+    private int limite;            // Ocupación a partir de la cual se redimensiona
+
+    /**
+     * Constructor con la capacidad por defecto.
+     */
+    public TablaVehiculos() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Constructor que reserva sitio para un número esperado de vehículos.
+     * @param esperados Vehículos que se espera almacenar
+     */
+    public TablaVehiculos(int esperados) {
+        int capacidad = CAPACIDAD_INICIAL;
+        while (capacidad * CARGA_MAXIMA < esperados) {
+            capacidad <<= 1;
+        }
+        reservar(capacidad);
+    }
+
+    /**
+     * Busca un vehículo por su matrícula codificada.
+     * @param codigo Código de la matrícula
+     * @return Vehículo encontrado o null
+     */
+    public Vehiculo get(int codigo) {
+        int i = buscarHueco(codigo);
+        return claves[i] == LIBRE ? null : valores[i];
+    }
+
+    @Override
+    public Vehiculo get(Object matricula) {
+        int codigo = codigoDe(matricula);
+        return codigo < 0 ? null : get(codigo);
+    }
+
+    @Override
+    public boolean containsKey(Object matricula) {
+        return get(matricula) != null;
+    }
+
+    /**
+     * Guarda un vehículo. La clave tiene que ser su propia matrícula.
+     * @param matricula Matrícula del vehículo
+     * @param v Vehículo a guardar
+     * @return Vehículo que había antes con esa matrícula, o null
+     */
+    @Override
+    public Vehiculo put(String matricula, Vehiculo v) {
+        if (v == null || !v.getMatricula().equals(matricula)) {
+            throw new IllegalArgumentException("La clave debe ser la matrícula del vehículo");
+        }
+        int codigo = Vehiculo.codificarMatricula(matricula);
+        if (codigo < 0) {
+            throw new IllegalArgumentException("Matrícula no válida: " + matricula);
+        }
+        int i = buscarHueco(codigo);
+        if (claves[i] != LIBRE) {
+            Vehiculo anterior = valores[i];
+            valores[i] = v;
+            return anterior;
+        }
+        claves[i] = codigo;
+        valores[i] = v;
+        if (++numVehiculos > limite) {
+            reservar(claves.length << 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Vehiculo remove(Object matricula) {
+        int codigo = codigoDe(matricula);
+        if (codigo < 0) {
+            return null;
+        }
+        int i = buscarHueco(codigo);
+        if (claves[i] == LIBRE) {
+            return null;
+        }
+        Vehiculo anterior = valores[i];
+        borrarHueco(i);
+        numVehiculos--;
+        return anterior;
+    }
+
+    @Override
+    public int size() {
+        return numVehiculos;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(claves, LIBRE);
+        Arrays.fill(valores, null);
+        numVehiculos = 0;
+    }
+
+    @Override
+    public Set<Entry<String, Vehiculo>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Vehiculo>> iterator() {
+                return new Iterator<>() {
+                    private int siguiente = avanzar(0);
+
+                    private int avanzar(int desde) {
+                        while (desde < claves.length && claves[desde] == LIBRE) {
+                            desde++;
+                        }
+                        return desde;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return siguiente < claves.length;
+                    }
+
+                    @Override
+                    public Entry<String, Vehiculo> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Vehiculo v = valores[siguiente];
+                        siguiente = avanzar(siguiente + 1);
+                        return new SimpleImmutableEntry<>(v.getMatricula(), v);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return numVehiculos;
+            }
+        };
+    }
+
+    // Traduce una clave del Map a su código, o -1 si no puede ser una matrícula
+    private static int codigoDe(Object matricula) {
+        return matricula instanceof String ? Vehiculo.codificarMatricula((String) matricula) : -1;
+    }
+
+    // Mezcla los bits del código para repartir matrículas consecutivas por la tabla
+    private int posicionInicial(int codigo) {
+        int h = codigo * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (claves.length - 1);
+    }
+
+    // Hueco que ocupa el código o, si no está, el hueco libre donde iría
+    private int buscarHueco(int codigo) {
+        int mascara = claves.length - 1;
+        int i = posicionInicial(codigo);
+        while (claves[i] != LIBRE && claves[i] != codigo) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    // Borrado por desplazamiento hacia atrás: no deja lápidas que alarguen las búsquedas
+    private void borrarHueco(int libre) {
+        int mascara = claves.length - 1;
+        int i = libre;
+        while (true) {
+            i = (i + 1) & mascara;
+            if (claves[i] == LIBRE) {
+                break;
+            }
+            int ideal = posicionInicial(claves[i]);
+            // Se mueve si su posición ideal no está entre el hueco libre y su posición actual
+            boolean mover = libre <= i ? (ideal <= libre || ideal > i) : (ideal <= libre && ideal > i);
+            if (mover) {
+                claves[libre] = claves[i];
+                valores[libre] = valores[i];
+                libre = i;
+            }
+        }
+        claves[libre] = LIBRE;
+        valores[libre] = null;
+    }
+
+    // Crea una tabla de la capacidad indicada y recoloca lo que hubiera
+    private void reservar(int capacidad) {
+        int[] clavesAntiguas = claves;
+        Vehiculo[] valoresAntiguos = valores;
+        claves = new int[capacidad];
+        valores = new Vehiculo[capacidad];
+        Arrays.fill(claves, LIBRE);
+        limite = (int) (capacidad * CARGA_MAXIMA);
+        if (clavesAntiguas == null) {
+            return;
+        }
+        for (int j = 0; j < clavesAntiguas.length; j++) {
+            if (clavesAntiguas[j] != LIBRE) {
+                int i = buscarHueco(clavesAntiguas[j]);
+                claves[i] = clavesAntiguas[j];
+                valores[i] = valoresAntiguos[j];
+            }
+        }
+    }
+}
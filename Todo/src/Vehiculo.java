@@ -1,4 +1,6 @@
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 
 /**
@@ -6,12 +8,40 @@ import java.util.*;
  * Implementa Serializable para permitir la serialización de objetos.
  */
 public class Vehiculo implements Serializable {
+    // Fijado al valor que Java calculaba para la clase original, para poder
+    // seguir leyendo los vehiculos.dat guardados antes de añadir métodos nuevos
+    private static final long serialVersionUID = 6802048220614812334L;
+
+    // Número de combinaciones de 3 letras (26^3)
+    private static final int COMBINACIONES_LETRAS = 26 * 26 * 26;
+
+    // Límites de velocidad en km/h
+    private static final int VELOCIDAD_MINIMA = 0;
+    private static final int VELOCIDAD_MAXIMA = 200;
+
+    /**
+     * Código que devuelven los cambios de velocidad sin excepción cuando el
+     * resultado quedaría fuera de 0-200 km/h.
+     */
+    public static final int VELOCIDAD_FUERA_DE_RANGO = -1;
+
+    // Acceso atómico (compare-and-set) al campo velocidadActual
+    private static final VarHandle VELOCIDAD;
+
+    static {
+        try {
+            VELOCIDAD = MethodHandles.lookup().findVarHandle(Vehiculo.class, "velocidadActual", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     // Atributos de la clase Vehiculo
     private String matricula;       // Matrícula del vehículo (formato: 4 dígitos + 3 letras)
     private String marca;           // Marca del vehículo (ej: Toyota, Ford)
     private String modelo;          // Modelo específico del vehículo
     private int añoFabricacion;     // Año de fabricación (entre 1950 y año actual)
-    private int velocidadActual;    // Velocidad actual (0-200 km/h)
+    private volatile int velocidadActual; // Velocidad actual (0-200 km/h), se cambia con CAS
 
     /**
      * Constructor principal de la clase vehiculo.
@@ -48,13 +78,108 @@ public class Vehiculo implements Serializable {
      * @throws MatriculaNoValidaException Si el formato no es válido
      */
     public void setMatricula(String matricula) throws MatriculaNoValidaException {
-        // Validación con expresión regular: 4 dígitos + 3 letras mayúsculas
-        if (!matricula.matches("\\d{4}[A-Z]{3}")) {
-            throw new MatriculaNoValidaException("Formato de matrícula inválido. Debe ser 4 dígitos + 3 letras (ej: 1234ABC)");
+        // Validación del formato: 4 dígitos + 3 letras mayúsculas
+        if (!esMatriculaValida(matricula)) {
+            throw MatriculaNoValidaException.FORMATO;
         }
         this.matricula = matricula;
     }
 
+    /**
+     * Comprueba el formato de matrícula (equivale a la expresión \d{4}[A-Z]{3})
+     * carácter a carácter, sin compilar ningún Pattern ni crear objetos.
+     * @param matricula Texto a comprobar
+     * @return true si son 4 dígitos seguidos de 3 letras mayúsculas
+     */
+    public static boolean esMatriculaValida(CharSequence matricula) {
+        if (matricula == null || matricula.length() != 7) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            char c = matricula.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        for (int i = 4; i < 7; i++) {
+            char c = matricula.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Comprueba el formato de matrícula directamente sobre bytes ASCII/UTF-8,
+     * para que un importador pueda validar sin crear el String.
+     * @param datos Buffer con los bytes
+     * @param desde Posición donde empieza la matrícula
+     * @param longitud Número de bytes del campo
+     * @return true si son 4 dígitos seguidos de 3 letras mayúsculas
+     */
+    public static boolean esMatriculaValida(byte[] datos, int desde, int longitud) {
+        if (longitud != 7) {
+            return false;
+        }
+        for (int i = desde; i < desde + 4; i++) {
+            if (datos[i] < '0' || datos[i] > '9') {
+                return false;
+            }
+        }
+        for (int i = desde + 4; i < desde + 7; i++) {
+            if (datos[i] < 'A' || datos[i] > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Codifica una matrícula en un único int: el número multiplicado por 26^3
+     * más las tres letras leídas en base 26. Caben las 175.760.000 matrículas
+     * posibles, así que sirve como clave primitiva sin guardar el String.
+     * @param matricula Matrícula a codificar
+     * @return Código entre 0 y 175.759.999, o -1 si el formato no es válido
+     */
+    public static int codificarMatricula(String matricula) {
+        if (!esMatriculaValida(matricula)) {
+            return -1;
+        }
+        int numero = 0;
+        for (int i = 0; i < 4; i++) {
+            numero = numero * 10 + (matricula.charAt(i) - '0');
+        }
+        int letras = 0;
+        for (int i = 4; i < 7; i++) {
+            letras = letras * 26 + (matricula.charAt(i) - 'A');
+        }
+        return numero * COMBINACIONES_LETRAS + letras;
+    }
+
+    /**
+     * Reconstruye la matrícula a partir de su código.
+     * @param codigo Código obtenido con codificarMatricula
+     * @return String con la matrícula (ej: 1234ABC)
+     */
+    public static String decodificarMatricula(int codigo) {
+        if (codigo < 0 || codigo >= 10000 * COMBINACIONES_LETRAS) {
+            throw new IllegalArgumentException("Código de matrícula fuera de rango: " + codigo);
+        }
+        int numero = codigo / COMBINACIONES_LETRAS;
+        int letras = codigo % COMBINACIONES_LETRAS;
+        char[] c = new char[7];
+        for (int i = 3; i >= 0; i--) {
+            c[i] = (char) ('0' + numero % 10);
+            numero /= 10;
+        }
+        for (int i = 6; i >= 4; i--) {
+            c[i] = (char) ('A' + letras % 26);
+            letras /= 26;
+        }
+        return new String(c);
+    }
+
     /**
      * Obtiene la marca del vehículo.
      * @return String con la marca
@@ -117,19 +242,30 @@ public class Vehiculo implements Serializable {
      * @throws VelocidadNoValidaException Si está fuera de rango
      */
     public void setVelocidadActual(int velocidadActual) throws VelocidadNoValidaException {
-        if (velocidadActual < 0 || velocidadActual > 200) {
-            throw new VelocidadNoValidaException("La velocidad debe estar entre 0 y 200 km/h");
+        if (!esVelocidadValida(velocidadActual)) {
+            throw VelocidadNoValidaException.FUERA_DE_RANGO;
         }
         this.velocidadActual = velocidadActual;
     }
 
+    /**
+     * Comprueba si una velocidad está dentro del rango permitido.
+     * @param velocidad Velocidad en km/h
+     * @return true si está entre 0 y 200 km/h
+     */
+    public static boolean esVelocidadValida(int velocidad) {
+        return velocidad >= VELOCIDAD_MINIMA && velocidad <= VELOCIDAD_MAXIMA;
+    }
+
     /**
      * Aumenta la velocidad del vehículo.
      * @param incremento Cantidad a aumentar
      * @throws VelocidadNoValidaException Si supera el límite máximo
      */
     public void aumentarVelocidad(int incremento) throws VelocidadNoValidaException {
-        setVelocidadActual(this.velocidadActual + incremento);
+        if (intentarCambiarVelocidad(incremento) == VELOCIDAD_FUERA_DE_RANGO) {
+            throw VelocidadNoValidaException.FUERA_DE_RANGO;
+        }
     }
 
     /**
@@ -138,7 +274,43 @@ public class Vehiculo implements Serializable {
      * @throws VelocidadNoValidaException Si es menor que 0
      */
     public void disminuirVelocidad(int decremento) throws VelocidadNoValidaException {
-        setVelocidadActual(this.velocidadActual - decremento);
+        if (intentarCambiarVelocidad(-(long) decremento) == VELOCIDAD_FUERA_DE_RANGO) {
+            throw VelocidadNoValidaException.FUERA_DE_RANGO;
+        }
+    }
+
+    /**
+     * Aumenta la velocidad sin lanzar excepciones, pensado para los flujos de
+     * telemetría donde varios hilos actualizan el mismo vehículo.
+     * @param incremento Cantidad a aumentar
+     * @return Nueva velocidad, o VELOCIDAD_FUERA_DE_RANGO si superaría el máximo
+     */
+    public int intentarAumentarVelocidad(int incremento) {
+        return intentarCambiarVelocidad(incremento);
+    }
+
+    /**
+     * Disminuye la velocidad sin lanzar excepciones.
+     * @param decremento Cantidad a disminuir
+     * @return Nueva velocidad, o VELOCIDAD_FUERA_DE_RANGO si quedaría por debajo de 0
+     */
+    public int intentarDisminuirVelocidad(int decremento) {
+        return intentarCambiarVelocidad(-(long) decremento);
+    }
+
+    // Bucle compare-and-set: ninguna actualización concurrente se pierde y el
+    // rango se comprueba sobre el valor que realmente se va a sustituir
+    private int intentarCambiarVelocidad(long cambio) {
+        while (true) {
+            int actual = velocidadActual;
+            long nueva = actual + cambio;
+            if (nueva < VELOCIDAD_MINIMA || nueva > VELOCIDAD_MAXIMA) {
+                return VELOCIDAD_FUERA_DE_RANGO;
+            }
+            if (VELOCIDAD.compareAndSet(this, actual, (int) nueva)) {
+                return (int) nueva;
+            }
+        }
     }
 
     /**
@@ -153,22 +325,42 @@ public class Vehiculo implements Serializable {
 
     // ==================== CLASES DE EXCEPCIÓN INTERNAS ====================
 
+    // Todas admiten un modo sin traza (conTraza = false): no se rellena la pila ni
+    // se admiten excepciones suprimidas, así que crearlas es barato y una misma
+    // instancia con mensaje fijo se puede compartir sin riesgo.
+
     /**
      * Excepción para matrículas inválidas.
      */
     public static class MatriculaNoValidaException extends Exception {
+        // Instancia compartida para el error de formato, el más frecuente en importaciones
+        static final MatriculaNoValidaException FORMATO = new MatriculaNoValidaException(
+                "Formato de matrícula inválido. Debe ser 4 dígitos + 3 letras (ej: 1234ABC)", false);
+
         public MatriculaNoValidaException(String mensaje) {
             super(mensaje);
         }
+
+        public MatriculaNoValidaException(String mensaje, boolean conTraza) {
+            super(mensaje, null, conTraza, conTraza);
+        }
     }
 
     /**
      * Excepción para velocidades inválidas.
      */
     public static class VelocidadNoValidaException extends Exception {
+        // Instancia compartida para cualquier velocidad fuera de 0-200 km/h
+        static final VelocidadNoValidaException FUERA_DE_RANGO = new VelocidadNoValidaException(
+                "La velocidad debe estar entre 0 y 200 km/h", false);
+
         public VelocidadNoValidaException(String mensaje) {
             super(mensaje);
         }
+
+        public VelocidadNoValidaException(String mensaje, boolean conTraza) {
+            super(mensaje, null, conTraza, conTraza);
+        }
     }
 
     /**
@@ -178,6 +370,10 @@ public class Vehiculo implements Serializable {
         public VehiculoYaExisteException(String mensaje) {
             super(mensaje);
         }
+
+        public VehiculoYaExisteException(String mensaje, boolean conTraza) {
+            super(mensaje, null, conTraza, conTraza);
+        }
     }
 
     /**
@@ -187,6 +383,10 @@ public class Vehiculo implements Serializable {
         public VehiculoNoEncontradoException(String mensaje) {
             super(mensaje);
         }
+
+        public VehiculoNoEncontradoException(String mensaje, boolean conTraza) {
+            super(mensaje, null, conTraza, conTraza);
+        }
     }
 }
 
@@ -219,6 +419,7 @@ public class Main {
                         gestor.guardarDatos();
                         System.out.println("👋 Saliendo del programa. ¡Hasta pronto!");
                     }
+                    case 13 -> gestor.mostrarOcupacion();
                     default -> System.out.println("❗ Opción no válida.");
                 }
             } catch (NumberFormatException e) {
@@ -228,6 +429,25 @@ public class Main {
         } while (opcion != 12);
     }
 
+    // Menú principal (las opciones nuevas van al final para no cambiar los números de las existentes)
+    private static void mostrarMenu() {
+        System.out.println("\n=== GESTIÓN DE PARKING ===");
+        System.out.println("1. Añadir vehículo");
+        System.out.println("2. Mostrar vehículos");
+        System.out.println("3. Buscar vehículo");
+        System.out.println("4. Modificar vehículo");
+        System.out.println("5. Eliminar vehículo");
+        System.out.println("6. Aumentar velocidad");
+        System.out.println("7. Disminuir velocidad");
+        System.out.println("8. Ver vehículos por marca");
+        System.out.println("9. Ver vehículos por año");
+        System.out.println("10. Ver estadísticas");
+        System.out.println("11. Guardar datos");
+        System.out.println("12. Salir");
+        System.out.println("13. Ver ocupación del parking");
+        System.out.print("Seleccione opción: ");
+    }
+
     // Resto de métodos auxiliares para el menú...
     // [Se mantienen igual que en el código original]
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+/**
+ * Máxima, mínima y media de los últimos N minutos completos.
+ * Cada minuto cerrado entra en una cola (para restar su suma al salir de la
+ * ventana) y en dos colas monótonas: la de máximas guarda valores
+ * decrecientes y la de mínimas crecientes, así que el extremo de la ventana
+ * siempre está al principio. Cada minuto entra y sale una sola vez: O(1)
+ * amortizado por minuto y O(1) por consulta.
+ */
+class VentaDeslizante {
+    private final int minutos;          // Longitud de la ventana
+    // Cola de minutos cerrados dentro de la ventana
+    private final long[] colaMinutos;
+    private final long[] colaConta;
+    private final double[] colaSuma;
+    private int inicioCola, tamanoCola;
+    // Colas monótonas de máximas y mínimas (minuto y valor)
+    private final long[] maxMinutos, minMinutos;
+    private final float[] maxValores, minValores;
+    private int inicioMax, tamanoMax, inicioMin, tamanoMin;
+    private long conta;
+    private double suma;
+
+    /**
+     * Constructor de la ventana
+     * @param minutos Minutos que abarca la ventana
+     */
+    public VentaDeslizante(int minutos) {
+        this.minutos = minutos;
+        colaMinutos = new long[minutos];
+        colaConta = new long[minutos];
+        colaSuma = new double[minutos];
+        maxMinutos = new long[minutos];
+        maxValores = new float[minutos];
+        minMinutos = new long[minutos];
+        minValores = new float[minutos];
+    }
+
+    /**
+     * Añade un minuto que ya no va a recibir más lecturas
+     * @param minuto Número de minuto (instante / 60000)
+     * @param contaMinuto Lecturas del minuto
+     * @param sumaMinuto Suma de las temperaturas del minuto
+     * @param minima Mínima del minuto
+     * @param maxima Máxima del minuto
+     */
+    public void pecharMinuto(long minuto, long contaMinuto, double sumaMinuto, float minima, float maxima) {
+        caducar(minuto);
+        int fin = (inicioCola + tamanoCola++) % minutos;
+        colaMinutos[fin] = minuto;
+        colaConta[fin] = contaMinuto;
+        colaSuma[fin] = sumaMinuto;
+        conta += contaMinuto;
+        suma += sumaMinuto;
+        // Se descartan por el final los valores que ya nunca podrán ser el extremo
+        while (tamanoMax > 0 && maxValores[(inicioMax + tamanoMax - 1) % minutos] <= maxima) {
+            tamanoMax--;
+        }
+        fin = (inicioMax + tamanoMax++) % minutos;
+        maxMinutos[fin] = minuto;
+        maxValores[fin] = maxima;
+        while (tamanoMin > 0 && minValores[(inicioMin + tamanoMin - 1) % minutos] >= minima) {
+            tamanoMin--;
+        }
+        fin = (inicioMin + tamanoMin++) % minutos;
+        minMinutos[fin] = minuto;
+        minValores[fin] = minima;
+    }
+
+    /**
+     * Saca de la ventana los minutos anteriores a los N últimos
+     * @param minutoActual Minuto que marca el final de la ventana (incluido)
+     */
+    public void caducar(long minutoActual) {
+        long limite = minutoActual - minutos;
+        while (tamanoCola > 0 && colaMinutos[inicioCola] <= limite) {
+            conta -= colaConta[inicioCola];
+            suma -= colaSuma[inicioCola];
+            inicioCola = (inicioCola + 1) % minutos;
+            tamanoCola--;
+        }
+        while (tamanoMax > 0 && maxMinutos[inicioMax] <= limite) {
+            inicioMax = (inicioMax + 1) % minutos;
+            tamanoMax--;
+        }
+        while (tamanoMin > 0 && minMinutos[inicioMin] <= limite) {
+            inicioMin = (inicioMin + 1) % minutos;
+            tamanoMin--;
+        }
+    }
+
+    public int getMinutos() {
+        return minutos;
+    }
+
+    public long getConta() {
+        return conta;
+    }
+
+    public double getSuma() {
+        return suma;
+    }
+
+    public float getMaxima() {
+        return tamanoMax == 0 ? Float.NEGATIVE_INFINITY : maxValores[inicioMax];
+    }
+
+    public float getMinima() {
+        return tamanoMin == 0 ? Float.POSITIVE_INFINITY : minValores[inicioMin];
+    }
+}